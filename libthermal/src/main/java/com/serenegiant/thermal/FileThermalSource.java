@@ -0,0 +1,289 @@
+package com.serenegiant.thermal;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Replays recorded thermal data as a {@link ThermalSource}, either paced at a fixed frame rate
+ * or as fast as possible for throughput measurements.
+ *
+ * Supported recordings:
+ * - FLIR_ONE_STREAM: raw EP 0x85 byte stream, re-chunked like USB transfers and run through
+ *   {@link FlirOneFrameAssembler}, so the full driver-side parsing is exercised
+ * - FLIR_ONE_THERMAL: back to back padded thermal blocks as in thermal_1.raw
+ * - Y16: back to back dense little endian frames as in thermal_unpacked.raw
+ *
+ * Uses only plain Java so it also runs on a desktop JVM.
+ */
+public class FileThermalSource implements ThermalSource {
+    public static final int FORMAT_FLIR_ONE_STREAM = 0;
+    public static final int FORMAT_FLIR_ONE_THERMAL = 1;
+    public static final int FORMAT_Y16 = 2;
+
+    public static final float FLIR_ONE_FRAME_RATE = 8.7f;
+    private static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private final File file;
+    private final int format;
+    private final int recordSize;
+    private int width;
+    private int height;
+
+    private volatile float frameRate = 0;   // 0 = as fast as possible
+    private volatile boolean looping = false;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private volatile boolean isRunning = false;
+    private Thread playbackThread;
+    private Listener listener;
+
+    private volatile long framesDelivered = 0;
+    private volatile long startNanos = 0;
+    private volatile long endNanos = 0;
+
+    // Reused buffers
+    private byte[] recordBuffer;
+    private byte[] denseBuffer;
+    private long frameIndex;
+
+    private FileThermalSource(File file, int format, int recordSize, int width, int height) {
+        this.file = file;
+        this.format = format;
+        this.recordSize = recordSize;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @param file raw capture of EP 0x85 transfers
+     */
+    public static FileThermalSource forFlirOneStream(File file) {
+        return new FileThermalSource(file, FORMAT_FLIR_ONE_STREAM, 0,
+            FlirOneThermalUnpacker.WIDTH, FlirOneThermalUnpacker.HEIGHT);
+    }
+
+    /**
+     * @param blockSize bytes per recorded thermal block, at least {@link FlirOneThermalUnpacker#PADDED_BLOCK_SIZE}
+     */
+    public static FileThermalSource forFlirOneThermalBlocks(File file, int blockSize) {
+        if (!FlirOneThermalUnpacker.isPaddedBlock(blockSize)) {
+            throw new IllegalArgumentException("not a padded thermal block size: " + blockSize);
+        }
+        return new FileThermalSource(file, FORMAT_FLIR_ONE_THERMAL, blockSize,
+            FlirOneThermalUnpacker.WIDTH, FlirOneThermalUnpacker.HEIGHT);
+    }
+
+    public static FileThermalSource forY16(File file, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("invalid frame size: " + width + "x" + height);
+        }
+        return new FileThermalSource(file, FORMAT_Y16, width * height * 2, width, height);
+    }
+
+    /**
+     * @param fps replay rate, 0 to deliver frames as fast as the listener consumes them
+     */
+    public void setFrameRate(float fps) {
+        if (fps < 0) {
+            throw new IllegalArgumentException("negative frame rate: " + fps);
+        }
+        frameRate = fps;
+    }
+
+    /**
+     * Restart from the beginning of the file instead of ending the source.
+     */
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    /**
+     * @param chunkSize bytes per simulated USB transfer for FLIR_ONE_STREAM recordings
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("invalid chunk size: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public synchronized void start(Listener listener) {
+        if (isRunning) {
+            return;
+        }
+        this.listener = listener;
+        isRunning = true;
+        framesDelivered = 0;
+        playbackThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                playbackLoop();
+            }
+        }, "FileThermalSource");
+        playbackThread.start();
+    }
+
+    @Override
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            isRunning = false;
+            thread = playbackThread;
+            playbackThread = null;
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.interrupt();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    @Override
+    public long getFramesDelivered() {
+        return framesDelivered;
+    }
+
+    /**
+     * @return delivered frames per second since start(), the maximum throughput when the frame rate is 0
+     */
+    public double getMeasuredFrameRate() {
+        long end = isRunning ? System.nanoTime() : endNanos;
+        long elapsed = end - startNanos;
+        return elapsed > 0 ? framesDelivered * 1e9 / elapsed : 0;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    private void playbackLoop() {
+        startNanos = System.nanoTime();
+        frameIndex = 0;
+        try {
+            do {
+                InputStream in = new FileInputStream(file);
+                try {
+                    if (format == FORMAT_FLIR_ONE_STREAM) {
+                        replayStream(in);
+                    } else {
+                        replayRecords(in);
+                    }
+                } finally {
+                    in.close();
+                }
+            } while (isRunning && looping);
+
+            endNanos = System.nanoTime();
+            if (isRunning) {
+                listener.onSourceEnded();
+            }
+        } catch (IOException e) {
+            endNanos = System.nanoTime();
+            listener.onSourceError("Replay of " + file + " failed: " + e.getMessage());
+        } finally {
+            isRunning = false;
+        }
+    }
+
+    private void replayRecords(InputStream in) throws IOException {
+        if (recordBuffer == null) {
+            recordBuffer = new byte[recordSize];
+            denseBuffer = format == FORMAT_Y16 ? recordBuffer : new byte[width * height * 2];
+        }
+        while (isRunning) {
+            if (!readFully(in, recordBuffer)) {
+                return;
+            }
+            if (format == FORMAT_FLIR_ONE_THERMAL) {
+                FlirOneThermalUnpacker.unpackLittleEndian(recordBuffer, 0, denseBuffer);
+            }
+            deliver(denseBuffer, width, height);
+        }
+    }
+
+    private void replayStream(InputStream in) throws IOException {
+        FlirOneFrameAssembler assembler = new FlirOneFrameAssembler();
+        assembler.setListener(new FlirOneFrameAssembler.FrameListener() {
+            @Override
+            public void onFrameAssembled(FlirOneFrame frame) {
+                try {
+                    if (frame.getThermalSize() <= 0 || !isRunning) {
+                        return;
+                    }
+                    frame.thermalWidth = FlirOneThermalUnpacker.WIDTH;
+                    frame.thermalHeight = FlirOneThermalUnpacker.HEIGHT;
+                    if (!frame.isThermalPadded() && frame.getThermalSize() / 2 == 80 * 60) {
+                        frame.thermalWidth = 80;
+                        frame.thermalHeight = 60;
+                    }
+                    int size = frame.getDenseThermalSize();
+                    if (denseBuffer == null || denseBuffer.length != size) {
+                        denseBuffer = new byte[size];
+                    }
+                    frame.copyThermalLittleEndian(denseBuffer);
+                    width = frame.getThermalWidth();
+                    height = frame.getThermalHeight();
+                    deliver(denseBuffer, width, height);
+                } finally {
+                    frame.release();
+                }
+            }
+        });
+
+        byte[] chunk = new byte[chunkSize];
+        int len;
+        while (isRunning && (len = in.read(chunk)) > 0) {
+            assembler.feed(chunk, 0, len, System.nanoTime());
+        }
+    }
+
+    private void deliver(byte[] y16, int w, int h) {
+        float fps = frameRate;
+        long now = System.nanoTime();
+        if (fps > 0) {
+            long due = startNanos + (long) (frameIndex * 1e9 / fps);
+            if (due > now) {
+                try {
+                    Thread.sleep((due - now) / 1000000L, (int) ((due - now) % 1000000L));
+                } catch (InterruptedException e) {
+                    return;
+                }
+                now = System.nanoTime();
+            }
+        }
+        frameIndex++;
+        listener.onThermalFrame(y16, w, h, now);
+        framesDelivered++;
+    }
+
+    private static boolean readFully(InputStream in, byte[] buffer) throws IOException {
+        int pos = 0;
+        while (pos < buffer.length) {
+            int n = in.read(buffer, pos, buffer.length - pos);
+            if (n < 0) {
+                if (pos == 0) {
+                    return false;
+                }
+                throw new EOFException("truncated frame: " + pos + " of " + buffer.length + " bytes");
+            }
+            pos += n;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,195 @@
+package com.serenegiant.thermal;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One assembled FLIR ONE frame, leased from a {@link FlirOneFramePool}.
+ * The payload stays in the pooled buffer: thermal block first, then JPEG, then status JSON.
+ * Consumers must call {@link #release()} exactly once when done, the buffer is then
+ * handed to the assembler for a later frame.
+ */
+public class FlirOneFrame {
+    private final FlirOneFramePool pool;
+    private final byte[] data;
+    private final AtomicBoolean leased = new AtomicBoolean(false);
+    private final short[] thermalPixels = new short[FlirOneThermalUnpacker.WIDTH * FlirOneThermalUnpacker.HEIGHT];
+    private boolean thermalPixelsValid;
+
+    int thermalSize;
+    int jpgSize;
+    int statusSize;
+    int thermalWidth;
+    int thermalHeight;
+    boolean imageUnstable;
+    long sequenceNumber;
+    long timestampNanos;
+    int chunkCount;
+    int byteCount;
+
+    FlirOneFrame(FlirOneFramePool pool, int capacity) {
+        this.pool = pool;
+        this.data = new byte[capacity];
+    }
+
+    /**
+     * @return the backing buffer, valid until {@link #release()}
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return monotonic frame number, a gap to the previous frame is the number of frames lost
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * @return SystemClock.elapsedRealtimeNanos() when the first chunk of this frame arrived
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * @return USB chunks the frame was assembled from
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * @return bytes of this frame on the wire, header included
+     */
+    public int getByteCount() {
+        return byteCount;
+    }
+
+    public int getThermalOffset() {
+        return 0;
+    }
+
+    public int getThermalSize() {
+        return thermalSize;
+    }
+
+    public int getJpegOffset() {
+        return thermalSize;
+    }
+
+    public int getJpegSize() {
+        return jpgSize;
+    }
+
+    public int getStatusOffset() {
+        return thermalSize + jpgSize;
+    }
+
+    public int getStatusSize() {
+        return statusSize;
+    }
+
+    public int getThermalWidth() {
+        return thermalWidth;
+    }
+
+    public int getThermalHeight() {
+        return thermalHeight;
+    }
+
+    /**
+     * @return true if the thermal block still has the 164-word row padding of the Gen 2 sensor
+     */
+    public boolean isThermalPadded() {
+        return FlirOneThermalUnpacker.isPaddedBlock(thermalSize);
+    }
+
+    /**
+     * @return true if the camera reported FFC or a closed shutter for this frame, its
+     * thermal image is frozen or meaningless and should not drive AGC or captures
+     */
+    public boolean isImageUnstable() {
+        return imageUnstable;
+    }
+
+    /**
+     * @return dense thermalWidth x thermalHeight Y16 pixels, unpacked on first use into
+     * a buffer owned by this pooled frame
+     */
+    public short[] getThermalPixels() {
+        if (!thermalPixelsValid) {
+            if (isThermalPadded()) {
+                FlirOneThermalUnpacker.unpack(data, getThermalOffset(), thermalPixels);
+            } else {
+                final int n = Math.min(thermalWidth * thermalHeight, thermalSize / 2);
+                for (int i = 0, s = getThermalOffset(); i < n; i++, s += 2) {
+                    thermalPixels[i] = (short) ((data[s] & 0xFF) | (data[s + 1] << 8));
+                }
+            }
+            thermalPixelsValid = true;
+        }
+        return thermalPixels;
+    }
+
+    /**
+     * @return bytes written by {@link #copyThermalLittleEndian(byte[])}
+     */
+    public int getDenseThermalSize() {
+        return thermalWidth * thermalHeight * 2;
+    }
+
+    /**
+     * Writes the dense thermal frame as little endian Y16, dropping the row padding in the same pass.
+     * @param dst at least {@link #getDenseThermalSize()} bytes
+     */
+    public void copyThermalLittleEndian(byte[] dst) {
+        if (isThermalPadded()) {
+            FlirOneThermalUnpacker.unpackLittleEndian(data, getThermalOffset(), dst);
+        } else {
+            System.arraycopy(data, getThermalOffset(), dst, 0, Math.min(thermalSize, getDenseThermalSize()));
+        }
+    }
+
+    /**
+     * Fills in the layout of a frame assembled outside {@link FlirOneFrameAssembler}, e.g. natively,
+     * after its payload was copied into {@link #getData()}.
+     */
+    public void setAssembled(int thermalSize, int jpgSize, int statusSize,
+            long sequenceNumber, long timestampNanos, int chunkCount, int byteCount) {
+        this.thermalSize = thermalSize;
+        this.jpgSize = jpgSize;
+        this.statusSize = statusSize;
+        this.sequenceNumber = sequenceNumber;
+        this.timestampNanos = timestampNanos;
+        this.chunkCount = chunkCount;
+        this.byteCount = byteCount;
+    }
+
+    /**
+     * Sets the sensor size the thermal block is interpreted with, the frame header does not carry it.
+     */
+    public void setThermalDimensions(int width, int height) {
+        thermalWidth = width;
+        thermalHeight = height;
+    }
+
+    public void setImageUnstable(boolean unstable) {
+        imageUnstable = unstable;
+    }
+
+    boolean lease() {
+        thermalPixelsValid = false;
+        imageUnstable = false;
+        return leased.compareAndSet(false, true);
+    }
+
+    /**
+     * Returns this frame to its pool. The buffer must not be touched afterwards.
+     */
+    public void release() {
+        if (leased.compareAndSet(true, false)) {
+            pool.recycle(this);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.serenegiant.thermal;
+
+/**
+ * Streaming parser that rebuilds FLIR ONE frames from the EP 0x85 byte stream.
+ *
+ * Frame layout: 28 byte header followed by frameSize bytes of payload
+ * (thermal block, then JPEG, then status JSON).
+ * Header: magic EF BE 00 00 at 0, frameSize at 8, thermalSize at 12, jpgSize at 16, statusSize at 20,
+ * all little endian.
+ *
+ * The magic is searched anywhere in a chunk, headers may straddle chunk boundaries,
+ * and a header with inconsistent sizes is rejected by rescanning from the byte after its magic.
+ * Payloads are written straight into frames leased from a {@link FlirOneFramePool}, so neither
+ * assembly nor resyncing after a dropped packet allocates. If the pool is exhausted the frame is
+ * skipped and counted as dropped.
+ * Every header that starts a frame takes the next sequence number, including frames that are
+ * dropped later, so gaps in the delivered sequence numbers show exactly how many were lost.
+ * Not thread safe, feed() is expected to be called from the stream thread only.
+ */
+public class FlirOneFrameAssembler {
+    public static final int HEADER_SIZE = 28;
+    public static final int DEFAULT_MAX_FRAME_SIZE = 512 * 1024;
+
+    private static final byte[] MAGIC_BYTES = {(byte)0xEF, (byte)0xBE, 0x00, 0x00};
+
+    private static final int STATE_SEARCH = 0;
+    private static final int STATE_HEADER = 1;
+    private static final int STATE_PAYLOAD = 2;
+
+    public interface FrameListener {
+        /**
+         * Called on the feeding thread once a frame is complete.
+         * Ownership passes to the listener, which must call {@link FlirOneFrame#release()}.
+         */
+        void onFrameAssembled(FlirOneFrame frame);
+    }
+
+    private final byte[] header = new byte[HEADER_SIZE];
+    private final byte[] rescanBuffer = new byte[HEADER_SIZE];
+    private final FlirOneFramePool pool;
+    private final int maxFrameSize;
+    private FrameListener listener;
+    private FlirOneFrame currentFrame; // null while skipping a frame the pool had no room for
+
+    private int state = STATE_SEARCH;
+    private int magicMatched = 0;
+    private int headerPos = 0;
+    private int payloadPos = 0;
+    private int frameSize, thermalSize, jpgSize, statusSize;
+    // current frame's bookkeeping
+    private long frameTimestampNanos;
+    private long chunkTimestampNanos;
+    private int frameChunks;
+
+    private volatile long sequenceNumber = 0;
+
+    // Statistics, written by the feeding thread only and readable from any thread
+    private volatile long framesAssembled = 0;
+    private volatile long framesDropped = 0;
+    private volatile long framesOverflowed = 0;
+    private volatile long resyncCount = 0;
+    private volatile long bytesDiscarded = 0;
+    private volatile long chunksFed = 0;
+    private volatile long bytesFed = 0;
+
+    public FlirOneFrameAssembler() {
+        this(new FlirOneFramePool(FlirOneFramePool.DEFAULT_POOL_SIZE, DEFAULT_MAX_FRAME_SIZE));
+    }
+
+    public FlirOneFrameAssembler(FlirOneFramePool pool) {
+        this.pool = pool;
+        this.maxFrameSize = pool.getFrameCapacity();
+    }
+
+    public void setListener(FrameListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Drops any partial frame and starts searching for the next magic.
+     */
+    public void reset() {
+        if (currentFrame != null) {
+            currentFrame.release();
+            currentFrame = null;
+        }
+        state = STATE_SEARCH;
+        magicMatched = 0;
+        headerPos = 0;
+        payloadPos = 0;
+    }
+
+    /**
+     * Feeds one USB chunk into the parser.
+     * @param timestampNanos arrival time of the chunk, a frame is stamped with the time of the
+     * chunk its header started in
+     */
+    public void feed(byte[] data, int offset, int length, long timestampNanos) {
+        chunksFed++;
+        bytesFed += length;
+        chunkTimestampNanos = timestampNanos;
+        // The camera starts every frame on a transfer boundary. If a new, valid header shows up
+        // while the previous frame is still short, a packet was lost: restart on the new frame
+        // instead of splicing both together.
+        if (state == STATE_PAYLOAD && length >= HEADER_SIZE && isValidHeader(data, offset)) {
+            framesDropped++;
+            resyncCount++;
+            bytesDiscarded += payloadPos;
+            reset();
+        }
+        if (state != STATE_SEARCH) {
+            frameChunks++;
+        }
+        parse(data, offset, length);
+    }
+
+    private void parse(byte[] data, int offset, int length) {
+        int i = offset;
+        final int end = offset + length;
+
+        while (i < end) {
+            switch (state) {
+            case STATE_SEARCH:
+                i = searchMagic(data, i, end);
+                break;
+
+            case STATE_HEADER: {
+                int n = Math.min(HEADER_SIZE - headerPos, end - i);
+                System.arraycopy(data, i, header, headerPos, n);
+                headerPos += n;
+                i += n;
+                if (headerPos == HEADER_SIZE) {
+                    onHeaderComplete();
+                }
+                break;
+            }
+
+            case STATE_PAYLOAD: {
+                int n = Math.min(frameSize - payloadPos, end - i);
+                if (currentFrame != null) {
+                    System.arraycopy(data, i, currentFrame.getData(), payloadPos, n);
+                } else {
+                    bytesDiscarded += n;
+                }
+                payloadPos += n;
+                i += n;
+                if (payloadPos == frameSize) {
+                    completeFrame();
+                }
+                break;
+            }
+            }
+        }
+    }
+
+    /**
+     * Incremental magic matcher, keeps partial matches across chunks.
+     * @return index of the first byte not consumed
+     */
+    private int searchMagic(byte[] data, int i, int end) {
+        while (i < end) {
+            byte b = data[i++];
+            if (b == MAGIC_BYTES[magicMatched]) {
+                if (++magicMatched == MAGIC_BYTES.length) {
+                    frameTimestampNanos = chunkTimestampNanos;
+                    frameChunks = 1;
+                    System.arraycopy(MAGIC_BYTES, 0, header, 0, MAGIC_BYTES.length);
+                    headerPos = MAGIC_BYTES.length;
+                    magicMatched = 0;
+                    state = STATE_HEADER;
+                    return i;
+                }
+            } else {
+                // only the first magic byte can restart a match
+                bytesDiscarded += magicMatched + (b == MAGIC_BYTES[0] ? 0 : 1);
+                magicMatched = (b == MAGIC_BYTES[0]) ? 1 : 0;
+            }
+        }
+        return i;
+    }
+
+    private void onHeaderComplete() {
+        if (parseSizes(header, 0)) {
+            frameSize = getInt32(header, 8);
+            thermalSize = getInt32(header, 12);
+            jpgSize = getInt32(header, 16);
+            statusSize = getInt32(header, 20);
+            payloadPos = 0;
+            state = STATE_PAYLOAD;
+            sequenceNumber++;
+            currentFrame = pool.acquire();
+            if (frameSize == 0) {
+                // nothing to wait for
+                completeFrame();
+            }
+        } else {
+            // False magic or corrupted header: rescan everything after the magic's first byte
+            resyncCount++;
+            bytesDiscarded++;
+            System.arraycopy(header, 1, rescanBuffer, 0, HEADER_SIZE - 1);
+            reset();
+            parse(rescanBuffer, 0, HEADER_SIZE - 1);
+        }
+    }
+
+    private void completeFrame() {
+        FlirOneFrame frame = currentFrame;
+        currentFrame = null;
+        reset();
+        if (frame == null) {
+            // pool was exhausted, the consumer is too slow
+            framesDropped++;
+            framesOverflowed++;
+            return;
+        }
+        framesAssembled++;
+        frame.sequenceNumber = sequenceNumber;
+        frame.timestampNanos = frameTimestampNanos;
+        frame.chunkCount = frameChunks;
+        frame.byteCount = HEADER_SIZE + frameSize;
+        frame.thermalSize = thermalSize;
+        frame.jpgSize = jpgSize;
+        frame.statusSize = statusSize;
+        if (listener != null) {
+            listener.onFrameAssembled(frame);
+        } else {
+            frame.release();
+        }
+    }
+
+    private boolean isValidHeader(byte[] data, int offset) {
+        return data[offset] == MAGIC_BYTES[0]
+            && data[offset + 1] == MAGIC_BYTES[1]
+            && data[offset + 2] == MAGIC_BYTES[2]
+            && data[offset + 3] == MAGIC_BYTES[3]
+            && parseSizes(data, offset);
+    }
+
+    private boolean parseSizes(byte[] data, int offset) {
+        long frame = getInt32(data, offset + 8);
+        long thermal = getInt32(data, offset + 12);
+        long jpg = getInt32(data, offset + 16);
+        long status = getInt32(data, offset + 20);
+        return frame >= 0 && frame <= maxFrameSize
+            && thermal >= 0 && jpg >= 0 && status >= 0
+            && thermal + jpg + status <= frame;
+    }
+
+    private static int getInt32(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) |
+                ((buffer[offset + 1] & 0xFF) << 8) |
+                ((buffer[offset + 2] & 0xFF) << 16) |
+                ((buffer[offset + 3] & 0xFF) << 24);
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    public FlirOneFramePool getFramePool() {
+        return pool;
+    }
+
+    public long getFramesAssembled() {
+        return framesAssembled;
+    }
+
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    /**
+     * @return frames skipped because every pooled frame was still held by the consumer,
+     * included in {@link #getFramesDropped()}
+     */
+    public long getFramesOverflowed() {
+        return framesOverflowed;
+    }
+
+    /**
+     * @return sequence number of the last frame header seen, 0 before the first
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public long getChunksFed() {
+        return chunksFed;
+    }
+
+    public long getBytesFed() {
+        return bytesFed;
+    }
+
+    public long getResyncCount() {
+        return resyncCount;
+    }
+
+    public long getBytesDiscarded() {
+        return bytesDiscarded;
+    }
+}
@@ -0,0 +1,59 @@
+package com.serenegiant.thermal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Fixed set of preallocated {@link FlirOneFrame} buffers shared between the frame assembler
+ * and the consumer. acquire() never blocks or allocates: when every frame is still leased
+ * the assembler drops the incoming frame instead, which is the backpressure for slow consumers.
+ */
+public class FlirOneFramePool {
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    private final ArrayBlockingQueue<FlirOneFrame> freeFrames;
+    private final int frameCapacity;
+    private volatile long exhaustedCount = 0;
+
+    public FlirOneFramePool(int poolSize, int frameCapacity) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize must be positive: " + poolSize);
+        }
+        this.frameCapacity = frameCapacity;
+        freeFrames = new ArrayBlockingQueue<FlirOneFrame>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            freeFrames.offer(new FlirOneFrame(this, frameCapacity));
+        }
+    }
+
+    /**
+     * @return a leased frame, or null if every frame is still held by a consumer
+     */
+    public FlirOneFrame acquire() {
+        FlirOneFrame frame = freeFrames.poll();
+        if (frame == null) {
+            exhaustedCount++;
+            return null;
+        }
+        frame.lease();
+        return frame;
+    }
+
+    void recycle(FlirOneFrame frame) {
+        freeFrames.offer(frame);
+    }
+
+    public int getFrameCapacity() {
+        return frameCapacity;
+    }
+
+    public int getAvailableCount() {
+        return freeFrames.size();
+    }
+
+    /**
+     * @return number of acquire() calls that found the pool empty
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount;
+    }
+}
@@ -0,0 +1,76 @@
+package com.serenegiant.thermal;
+
+/**
+ * Turns the padded FLIR ONE Gen 2 thermal block into a dense 160x120 Y16 frame.
+ *
+ * Each sensor row is 164 little endian words: 2 words of row header, pixels 0-79,
+ * 2 more words of padding, then pixels 80-159 (see unpack_thermal.c).
+ * Both unpack methods do a single pass over the block into a caller-owned buffer.
+ */
+public final class FlirOneThermalUnpacker {
+    public static final int WIDTH = 160;
+    public static final int HEIGHT = 120;
+    public static final int ROW_STRIDE_WORDS = 164;
+    /** smallest thermal block that holds a full padded frame */
+    public static final int PADDED_BLOCK_SIZE = ROW_STRIDE_WORDS * HEIGHT * 2;
+
+    private static final int HALF_WIDTH = WIDTH / 2;
+    private static final int LEFT_OFFSET_BYTES = 4;   // word 2
+    private static final int MIDDLE_GAP_BYTES = 4;    // words 82-83 between both halves
+
+    private FlirOneThermalUnpacker() {
+    }
+
+    /**
+     * @return true if a thermal block of this size uses the padded 164-word row layout
+     */
+    public static boolean isPaddedBlock(int thermalSize) {
+        return thermalSize >= PADDED_BLOCK_SIZE;
+    }
+
+    /**
+     * @param dst receives WIDTH * HEIGHT pixels
+     */
+    public static void unpack(byte[] src, int srcOffset, short[] dst) {
+        checkBounds(src, srcOffset, dst.length);
+        int d = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            int s = srcOffset + y * ROW_STRIDE_WORDS * 2 + LEFT_OFFSET_BYTES;
+            for (int x = 0; x < HALF_WIDTH; x++, s += 2) {
+                dst[d++] = (short) ((src[s] & 0xFF) | (src[s + 1] << 8));
+            }
+            s += MIDDLE_GAP_BYTES;
+            for (int x = 0; x < HALF_WIDTH; x++, s += 2) {
+                dst[d++] = (short) ((src[s] & 0xFF) | (src[s + 1] << 8));
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #unpack(byte[], int, short[])} but writes dense little endian Y16 bytes,
+     * the layout the Boson path and the renderers consume.
+     * @param dst receives WIDTH * HEIGHT * 2 bytes
+     */
+    public static void unpackLittleEndian(byte[] src, int srcOffset, byte[] dst) {
+        checkBounds(src, srcOffset, dst.length / 2);
+        final int rowBytes = HALF_WIDTH * 2;
+        int d = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            int s = srcOffset + y * ROW_STRIDE_WORDS * 2 + LEFT_OFFSET_BYTES;
+            System.arraycopy(src, s, dst, d, rowBytes);
+            d += rowBytes;
+            s += rowBytes + MIDDLE_GAP_BYTES;
+            System.arraycopy(src, s, dst, d, rowBytes);
+            d += rowBytes;
+        }
+    }
+
+    private static void checkBounds(byte[] src, int srcOffset, int dstPixels) {
+        if (srcOffset < 0 || src.length - srcOffset < PADDED_BLOCK_SIZE) {
+            throw new IllegalArgumentException("thermal block too small: " + (src.length - srcOffset));
+        }
+        if (dstPixels < WIDTH * HEIGHT) {
+            throw new IllegalArgumentException("destination too small: " + dstPixels + " pixels");
+        }
+    }
+}
@@ -0,0 +1,620 @@
+package com.serenegiant.thermal;
+
+import java.util.Arrays;
+
+/**
+ * Turns Y16 thermal frames into ARGB pixels and temperatures, without any Android dependency.
+ *
+ * Frames are little endian 16-bit samples in a byte array, as they come from the camera.
+ * {@link #process} stretches each frame over its own min/max (auto-contrast), maps it through
+ * the current palette and writes ARGB_8888 ints, ready for Bitmap#setPixels. Nothing is
+ * allocated per frame, the caller owns both buffers.
+ *
+ * Palettes are built once into {@link #PALETTE_SIZE} entry lookup tables, so coloring a pixel is
+ * a single array index and switching palettes only swaps the table reference.
+ *
+ * With {@link #setFusedLutEnabled(boolean)} the contrast window and the palette are folded into
+ * one table indexed by the raw sample, so the render loop is a single load per pixel. That table
+ * is only rebuilt when the window moved more than the hysteresis, or the palette changed.
+ *
+ * {@link #AGC_PLATEAU} replaces the linear stretch with plateau histogram equalization as FLIR
+ * cores do onboard: every histogram bin is clipped at the plateau so large uniform areas do not
+ * take over the palette, the coldest and hottest tails are ignored so a single hot object does
+ * not squash the rest of the scene, and the clipped histogram is integrated into the fused table.
+ *
+ * With {@link #setTemporalAgc(boolean)} either mode renders a frame through the table built from
+ * the frames before it and gathers the min/max and histogram of the frame while rendering it, so
+ * every frame is a single pass. The window is an exponential moving average over about
+ * {@link #setAgcSmoothing(int)} frames, which keeps the image from flickering and from pumping
+ * its brightness when a hot object enters the scene.
+ *
+ * Not thread safe, use one instance per rendering thread.
+ */
+public class ThermalFrameProcessor {
+    public static final int PALETTE_IRON = 0;
+    public static final int PALETTE_RAINBOW = 1;
+    public static final int PALETTE_GRAY = 2;
+    public static final int PALETTE_NUM = 3;
+    /** entries of a palette lookup table, one per contrast scaled value */
+    public static final int PALETTE_SIZE = 256;
+    /** default AGC hysteresis of the fused table in raw counts, 0.16K for centi-Kelvin cores */
+    public static final int DEFAULT_AGC_HYSTERESIS = 16;
+
+    /** contrast stretched linearly between the min and max of the frame */
+    public static final int AGC_LINEAR = 0;
+    /** plateau histogram equalization */
+    public static final int AGC_PLATEAU = 1;
+    /** default clip limit of a histogram bin, fraction of the pixels of the frame */
+    public static final float DEFAULT_PLATEAU = 0.01f;
+    /** default fraction of pixels ignored at each end of the histogram */
+    public static final float DEFAULT_TAIL_REJECTION = 0.005f;
+    /** default number of frames the temporal AGC window is averaged over */
+    public static final int DEFAULT_AGC_SMOOTHING = 8;
+
+    public static final float KELVIN_OFFSET = 273.15f;
+    // plausible range of the cores we support, anything outside is a bad reading
+    public static final float MIN_TEMPERATURE = -40.0f;    // Celsius
+    public static final float MAX_TEMPERATURE = 400.0f;    // Celsius
+
+    private static final int[][] PALETTES = new int[PALETTE_NUM][];
+    static {
+        for (int palette = 0; palette < PALETTE_NUM; palette++) {
+            final int[] lut = new int[PALETTE_SIZE];
+            for (int value = 0; value < PALETTE_SIZE; value++) {
+                lut[value] = computeColor(value, palette);
+            }
+            PALETTES[palette] = lut;
+        }
+    }
+
+    private int palette = PALETTE_IRON;
+    private int[] lut = PALETTES[PALETTE_IRON];
+    private int lastMin;
+    private int lastMax;
+    // window the palette was spread over, min/max after tail rejection in plateau mode
+    private int windowMin;
+    private int windowMax;
+    // fused raw => ARGB table, allocated when first enabled
+    private boolean fusedEnabled;
+    private int hysteresis = DEFAULT_AGC_HYSTERESIS;
+    private int[] fusedLut;
+    private int[] fusedPalette;     // palette table fusedLut was built from, null if invalid
+    private int fusedMin;
+    private int fusedMax;
+    private int fusedRebuilds;
+    // plateau equalization, histogram allocated when first selected and cleared after every use
+    private int agcMode = AGC_LINEAR;
+    private float plateau = DEFAULT_PLATEAU;
+    private float tailRejection = DEFAULT_TAIL_REJECTION;
+    private int[] histogram;
+    // temporal AGC, the fused table for a frame is built from the frames before it
+    private boolean temporal;
+    private int smoothing = DEFAULT_AGC_SMOOTHING;
+    private int[] temporalPalette;  // palette the fused table was last built with, null to reseed
+    private int temporalMode;
+    private int smoothMin;          // window in raw counts << 8
+    private int smoothMax;
+
+    public void setPalette(int palette) {
+        if (palette < 0 || palette >= PALETTE_NUM) {
+            throw new IllegalArgumentException("unknown palette " + palette);
+        }
+        this.palette = palette;
+        lut = PALETTES[palette];
+    }
+
+    /**
+     * Uses a custom lookup table instead of the built-in palettes, {@link #getPalette()} returns -1
+     * until the next {@link #setPalette(int)}. The table is used as is, not copied.
+     * @param lut {@link #PALETTE_SIZE} ARGB colors, coldest first
+     */
+    public void setPaletteLut(int[] lut) {
+        if (lut == null || lut.length != PALETTE_SIZE) {
+            throw new IllegalArgumentException("palette lookup table needs " + PALETTE_SIZE + " entries");
+        }
+        this.palette = -1;
+        this.lut = lut;
+    }
+
+    /**
+     * Maps raw samples to colors through one 65536 entry table (256KB) built for the current
+     * contrast window and palette, instead of scaling every pixel.
+     */
+    public void setFusedLutEnabled(boolean enabled) {
+        fusedEnabled = enabled;
+        if (enabled && fusedLut == null) {
+            fusedLut = new int[0x10000];
+        }
+        fusedPalette = null;
+    }
+
+    public boolean isFusedLutEnabled() {
+        return fusedEnabled;
+    }
+
+    /**
+     * @param counts how far in raw counts the min or max of a frame may drift from the window
+     * the fused table was built for before it is rebuilt. Samples outside a stale window are
+     * drawn in the coldest or hottest color.
+     */
+    public void setAgcHysteresis(int counts) {
+        if (counts < 0) {
+            throw new IllegalArgumentException("negative hysteresis " + counts);
+        }
+        hysteresis = counts;
+    }
+
+    public int getAgcHysteresis() {
+        return hysteresis;
+    }
+
+    /**
+     * @return how often the fused table was built, to tune the hysteresis
+     */
+    public int getFusedLutRebuilds() {
+        return fusedRebuilds;
+    }
+
+    /**
+     * @param mode {@link #AGC_LINEAR} or {@link #AGC_PLATEAU}
+     */
+    public void setAgcMode(int mode) {
+        if (mode != AGC_LINEAR && mode != AGC_PLATEAU) {
+            throw new IllegalArgumentException("unknown AGC mode " + mode);
+        }
+        if (mode == AGC_PLATEAU) {
+            if (histogram == null) {
+                histogram = new int[0x10000];
+            }
+            if (fusedLut == null) {
+                fusedLut = new int[0x10000];
+            }
+        }
+        agcMode = mode;
+        fusedPalette = null;
+    }
+
+    public int getAgcMode() {
+        return agcMode;
+    }
+
+    /**
+     * Tunes {@link #AGC_PLATEAU}.
+     * @param plateau clip limit of a histogram bin as fraction of the pixels, (0, 1]. Lower
+     * values get closer to a linear stretch, 1 is plain histogram equalization
+     * @param tailRejection fraction of the pixels ignored at each end, [0, 0.5)
+     */
+    public void setPlateau(float plateau, float tailRejection) {
+        if (!(plateau > 0.0f && plateau <= 1.0f) || !(tailRejection >= 0.0f && tailRejection < 0.5f)) {
+            throw new IllegalArgumentException("bad plateau " + plateau + " / tail rejection " + tailRejection);
+        }
+        this.plateau = plateau;
+        this.tailRejection = tailRejection;
+    }
+
+    /**
+     * Renders every frame in one pass with the contrast window of the previous frames, see the
+     * class comment. Always uses the fused table, regardless of {@link #setFusedLutEnabled(boolean)}.
+     * The first frame, and the first one after a palette or AGC mode change, takes two passes.
+     */
+    public void setTemporalAgc(boolean enabled) {
+        temporal = enabled;
+        if (enabled && fusedLut == null) {
+            fusedLut = new int[0x10000];
+        }
+        temporalPalette = null;
+    }
+
+    public boolean isTemporalAgc() {
+        return temporal;
+    }
+
+    /**
+     * @param frames number of frames the temporal window roughly averages over, 1 follows
+     * every frame without smoothing. Frame N is still colored with the table of frame N-1, so
+     * even then the output only converges to the two-pass output on a static scene
+     */
+    public void setAgcSmoothing(int frames) {
+        if (frames < 1) {
+            throw new IllegalArgumentException("smoothing needs at least one frame, got " + frames);
+        }
+        smoothing = frames;
+    }
+
+    public int getAgcSmoothing() {
+        return smoothing;
+    }
+
+    public int getPalette() {
+        return palette;
+    }
+
+    /**
+     * Switches to the next palette, wrapping around.
+     * @return the new palette
+     */
+    public int nextPalette() {
+        setPalette((palette + 1) % PALETTE_NUM);
+        return palette;
+    }
+
+    /**
+     * Colorizes a whole frame at its own size.
+     * @param y16 at least width * height * 2 bytes
+     * @param argb at least width * height ints
+     */
+    public void process(byte[] y16, int width, int height, int[] argb) {
+        process(y16, width, height, argb, width, height);
+    }
+
+    /**
+     * Colorizes a frame into a smaller (or equal) output, sampling the nearest source pixel.
+     * The contrast range comes from the full source frame, except with temporal AGC, which only
+     * looks at the pixels it renders.
+     * @param y16 at least srcWidth * srcHeight * 2 bytes
+     * @param argb at least dstWidth * dstHeight ints, row stride dstWidth
+     */
+    public void process(byte[] y16, int srcWidth, int srcHeight,
+            int[] argb, int dstWidth, int dstHeight) {
+        final int pixelCount = srcWidth * srcHeight;
+        if (y16.length < pixelCount * 2) {
+            throw new IllegalArgumentException("Y16 buffer too small: " + y16.length + " < " + pixelCount * 2);
+        }
+        if (dstWidth <= 0 || dstHeight <= 0 || dstWidth > srcWidth || dstHeight > srcHeight) {
+            throw new IllegalArgumentException("bad output size " + dstWidth + "x" + dstHeight);
+        }
+        if (argb.length < dstWidth * dstHeight) {
+            throw new IllegalArgumentException("ARGB buffer too small: " + argb.length + " < " + dstWidth * dstHeight);
+        }
+
+        if (temporal && temporalPalette == lut && temporalMode == agcMode) {
+            renderTemporal(y16, srcWidth, srcHeight, argb, dstWidth, dstHeight);
+            return;
+        }
+        processTwoPass(y16, srcWidth, srcHeight, argb, dstWidth, dstHeight);
+        if (temporal) {
+            // seed the window with this frame
+            smoothMin = windowMin << 8;
+            smoothMax = windowMax << 8;
+            if (agcMode == AGC_LINEAR) {
+                buildFusedLut(lastMin, lastMax);
+            }
+            temporalPalette = lut;
+            temporalMode = agcMode;
+        }
+    }
+
+    private void processTwoPass(byte[] y16, int srcWidth, int srcHeight,
+            int[] argb, int dstWidth, int dstHeight) {
+        final int pixelCount = srcWidth * srcHeight;
+        if (agcMode == AGC_PLATEAU) {
+            buildPlateauLut(y16, pixelCount);
+            renderFused(y16, srcWidth, srcHeight, argb, dstWidth, dstHeight);
+            return;
+        }
+
+        // First pass: find min/max values for auto-contrast
+        int min = 0xFFFF;
+        int max = 0;
+        for (int i = 0, offset = 0; i < pixelCount; i++, offset += 2) {
+            final int raw = (y16[offset] & 0xFF) | ((y16[offset + 1] & 0xFF) << 8);
+            if (raw < min) min = raw;
+            if (raw > max) max = raw;
+        }
+        lastMin = min;
+        lastMax = max;
+        windowMin = min;
+        windowMax = max;
+
+        if (fusedEnabled) {
+            if (fusedPalette != lut
+                    || Math.abs(min - fusedMin) > hysteresis || Math.abs(max - fusedMax) > hysteresis) {
+                buildFusedLut(min, max);
+            }
+            renderFused(y16, srcWidth, srcHeight, argb, dstWidth, dstHeight);
+            return;
+        }
+
+        final int range = Math.max(max - min, 1);  // avoid division by zero
+
+        // Second pass: scale to 0-255 over the scene range and look up the palette
+        final int[] lut = this.lut;
+        int out = 0;
+        for (int y = 0; y < dstHeight; y++) {
+            final int rowOffset = (y * srcHeight / dstHeight) * srcWidth;
+            for (int x = 0; x < dstWidth; x++) {
+                final int offset = (rowOffset + x * srcWidth / dstWidth) * 2;
+                final int raw = (y16[offset] & 0xFF) | ((y16[offset + 1] & 0xFF) << 8);
+                argb[out++] = lut[((raw - min) * 255) / range];
+            }
+        }
+    }
+
+    /**
+     * Second pass of the fused modes, one table load per pixel.
+     */
+    private void renderFused(byte[] y16, int srcWidth, int srcHeight,
+            int[] argb, int dstWidth, int dstHeight) {
+        final int[] fused = fusedLut;
+        int out = 0;
+        for (int y = 0; y < dstHeight; y++) {
+            final int rowOffset = (y * srcHeight / dstHeight) * srcWidth;
+            for (int x = 0; x < dstWidth; x++) {
+                final int offset = (rowOffset + x * srcWidth / dstWidth) * 2;
+                argb[out++] = fused[(y16[offset] & 0xFF) | ((y16[offset + 1] & 0xFF) << 8)];
+            }
+        }
+    }
+
+    /**
+     * Temporal AGC: renders through the fused table of the previous frames while gathering the
+     * statistics of this one, then moves the window and rebuilds the table for the next frame.
+     */
+    private void renderTemporal(byte[] y16, int srcWidth, int srcHeight,
+            int[] argb, int dstWidth, int dstHeight) {
+        final int[] fused = fusedLut;
+        int min = 0xFFFF;
+        int max = 0;
+        int out = 0;
+        if (agcMode == AGC_PLATEAU) {
+            final int[] hist = histogram;
+            for (int y = 0; y < dstHeight; y++) {
+                final int rowOffset = (y * srcHeight / dstHeight) * srcWidth;
+                for (int x = 0; x < dstWidth; x++) {
+                    final int offset = (rowOffset + x * srcWidth / dstWidth) * 2;
+                    final int raw = (y16[offset] & 0xFF) | ((y16[offset + 1] & 0xFF) << 8);
+                    argb[out++] = fused[raw];
+                    hist[raw]++;
+                    if (raw < min) min = raw;
+                    if (raw > max) max = raw;
+                }
+            }
+            final int pixelCount = dstWidth * dstHeight;
+            lastMin = min;
+            lastMax = max;
+            rejectTails(min, max, pixelCount);
+            final int lo = smooth(windowMin, windowMax);
+            equalize(lo, Math.max(lo, (smoothMax + 0xFF) >> 8), pixelCount);
+            Arrays.fill(hist, min, max + 1, 0);
+        } else {
+            for (int y = 0; y < dstHeight; y++) {
+                final int rowOffset = (y * srcHeight / dstHeight) * srcWidth;
+                for (int x = 0; x < dstWidth; x++) {
+                    final int offset = (rowOffset + x * srcWidth / dstWidth) * 2;
+                    final int raw = (y16[offset] & 0xFF) | ((y16[offset + 1] & 0xFF) << 8);
+                    argb[out++] = fused[raw];
+                    if (raw < min) min = raw;
+                    if (raw > max) max = raw;
+                }
+            }
+            lastMin = min;
+            lastMax = max;
+            windowMin = min;
+            windowMax = max;
+            final int lo = smooth(min, max);
+            final int hi = Math.max(lo, (smoothMax + 0xFF) >> 8);
+            if (fusedPalette != lut || Math.abs(lo - fusedMin) > hysteresis || Math.abs(hi - fusedMax) > hysteresis) {
+                buildFusedLut(lo, hi);
+            }
+        }
+    }
+
+    /**
+     * Moves the temporal window towards min/max of the latest frame.
+     * @return low end of the window in raw counts
+     */
+    private int smooth(int min, int max) {
+        smoothMin += ((min << 8) - smoothMin) / smoothing;
+        smoothMax += ((max << 8) - smoothMax) / smoothing;
+        return smoothMin >> 8;
+    }
+
+    /**
+     * Builds the histogram and min/max in one pass over the frame, then integrates the clipped
+     * histogram into fusedLut. Only bins between min and max are visited, and cleared again.
+     */
+    private void buildPlateauLut(byte[] y16, int pixelCount) {
+        final int[] hist = histogram;
+        int min = 0xFFFF;
+        int max = 0;
+        for (int i = 0, offset = 0; i < pixelCount; i++, offset += 2) {
+            final int raw = (y16[offset] & 0xFF) | ((y16[offset + 1] & 0xFF) << 8);
+            hist[raw]++;
+            if (raw < min) min = raw;
+            if (raw > max) max = raw;
+        }
+        lastMin = min;
+        lastMax = max;
+        rejectTails(min, max, pixelCount);
+        equalize(windowMin, windowMax, pixelCount);
+        Arrays.fill(hist, min, max + 1, 0);
+    }
+
+    /**
+     * Tail rejection, the window starts where the coldest tail of the histogram ends and vice
+     * versa. Stores the window in windowMin/windowMax.
+     */
+    private void rejectTails(int min, int max, int pixelCount) {
+        final int[] hist = histogram;
+        final int tail = (int) (pixelCount * tailRejection);
+        int lo = min;
+        int below = hist[lo];
+        while (below <= tail && lo < max) {
+            below += hist[++lo];
+        }
+        int hi = max;
+        int above = hist[hi];
+        while (above <= tail && hi > lo) {
+            above += hist[--hi];
+        }
+        windowMin = lo;
+        windowMax = hi;
+    }
+
+    /**
+     * Clips every histogram bin between lo and hi at the plateau and integrates them into fusedLut.
+     */
+    private void equalize(int lo, int hi, int pixelCount) {
+        final int[] hist = histogram;
+        final int clip = Math.max(1, (int) (pixelCount * plateau));
+        int total = 0;
+        for (int raw = lo; raw <= hi; raw++) {
+            total += Math.min(hist[raw], clip);
+        }
+        final int[] lut = this.lut;
+        final int[] fused = fusedLut;
+        Arrays.fill(fused, 0, lo, lut[0]);
+        if (total > 0) {
+            // each bin takes the palette index at the middle of its share of the histogram
+            final long denominator = 2L * total;
+            int cumulative = 0;
+            for (int raw = lo; raw <= hi; raw++) {
+                final int count = Math.min(hist[raw], clip);
+                fused[raw] = lut[(int) (((2L * cumulative + count) * (PALETTE_SIZE - 1)) / denominator)];
+                cumulative += count;
+            }
+        }
+        Arrays.fill(fused, hi + 1, fused.length, lut[PALETTE_SIZE - 1]);
+        // the linear fused mode has to rebuild after this
+        fusedPalette = null;
+    }
+
+    private void buildFusedLut(int min, int max) {
+        final int[] lut = this.lut;
+        final int[] fused = fusedLut;
+        final int range = Math.max(max - min, 1);
+        Arrays.fill(fused, 0, min, lut[0]);
+        for (int raw = min; raw <= max; raw++) {
+            fused[raw] = lut[((raw - min) * 255) / range];
+        }
+        Arrays.fill(fused, max + 1, fused.length, lut[PALETTE_SIZE - 1]);
+        fusedPalette = lut;
+        fusedMin = min;
+        fusedMax = max;
+        fusedRebuilds++;
+    }
+
+    /**
+     * @return lowest raw value of the last processed frame
+     */
+    public int getLastMin() {
+        return lastMin;
+    }
+
+    /**
+     * @return highest raw value of the last processed frame
+     */
+    public int getLastMax() {
+        return lastMax;
+    }
+
+    /**
+     * @return low end of the raw range the palette was spread over for the last frame, the
+     * frame's minimum in linear mode and the tail-rejected one in {@link #AGC_PLATEAU}
+     */
+    public int getAgcWindowMin() {
+        return windowMin;
+    }
+
+    /**
+     * @return high end of the raw range the palette was spread over for the last frame
+     */
+    public int getAgcWindowMax() {
+        return windowMax;
+    }
+
+    /**
+     * @return little endian Y16 sample at pixel index
+     */
+    public static int getPixel(byte[] y16, int index) {
+        final int offset = index * 2;
+        return (y16[offset] & 0xFF) | ((y16[offset + 1] & 0xFF) << 8);
+    }
+
+    /**
+     * @return raw sample at the center of the frame
+     */
+    public static int getCenterPixel(byte[] y16, int width, int height) {
+        return getPixel(y16, (height / 2) * width + width / 2);
+    }
+
+    /**
+     * Converts a T-Linear sample to Celsius. FLIR cores report centi-Kelvin (Kelvin * 100);
+     * this is still an estimate, true accuracy requires the SDK calibration.
+     * @return temperature clamped to [MIN_TEMPERATURE, MAX_TEMPERATURE]
+     */
+    public static float rawToCelsius(int raw) {
+        final float celsius = (raw & 0xFFFF) / 100.0f - KELVIN_OFFSET;
+        return Math.max(MIN_TEMPERATURE, Math.min(MAX_TEMPERATURE, celsius));
+    }
+
+    /**
+     * @param value contrast scaled value 0-255
+     * @return ARGB color of the value in palette
+     */
+    public static int colorize(int value, int palette) {
+        return PALETTES[palette][value];
+    }
+
+    /**
+     * @return copy of the lookup table of a built-in palette, e.g. to derive a custom one
+     */
+    public static int[] getPaletteLut(int palette) {
+        return PALETTES[palette].clone();
+    }
+
+    private static int computeColor(int value, int palette) {
+        switch (palette) {
+            case PALETTE_IRON:
+                return iron(value);
+            case PALETTE_RAINBOW:
+                return rainbow(value);
+            default:
+                return gray(value);
+        }
+    }
+
+    private static int argb(int r, int g, int b) {
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int gray(int value) {
+        return argb(value, value, value);
+    }
+
+    private static int iron(int value) {
+        // cold=black/blue, hot=red/yellow
+        if (value < 85) {
+            return argb(0, 0, value * 3);
+        } else if (value < 170) {
+            return argb((value - 85) * 3, 0, 255 - (value - 85) * 3);
+        } else {
+            return argb(255, Math.min(255, (value - 170) * 3), 0);
+        }
+    }
+
+    private static int rainbow(int value) {
+        // hue from 0 to 300 (red to magenta) at full saturation and value,
+        // same result as android.graphics.Color#HSVToColor
+        final float hue = (value / 255.0f) * 300.0f;
+        final float h = hue / 60.0f;
+        final int sector = (int) h;
+        final float f = h - sector;
+        final int rising = Math.round(f * 255.0f);
+        final int falling = Math.round((1.0f - f) * 255.0f);
+        switch (sector) {
+            case 0:
+                return argb(255, rising, 0);
+            case 1:
+                return argb(falling, 255, 0);
+            case 2:
+                return argb(0, 255, rising);
+            case 3:
+                return argb(0, falling, 255);
+            case 4:
+                return argb(rising, 0, 255);
+            default:
+                return argb(255, 0, falling);
+        }
+    }
+}
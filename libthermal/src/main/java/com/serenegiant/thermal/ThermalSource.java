@@ -0,0 +1,38 @@
+package com.serenegiant.thermal;
+
+/**
+ * Producer of dense Y16 thermal frames, live or replayed.
+ * Lets the processing pipeline be driven without camera hardware.
+ */
+public interface ThermalSource {
+
+    interface Listener {
+        /**
+         * Called on the source's thread for every frame.
+         * @param y16 dense little endian 16-bit pixels, reused by the source after this returns
+         * @param timestampNanos capture (or replay) time in System.nanoTime() units
+         */
+        void onThermalFrame(byte[] y16, int width, int height, long timestampNanos);
+
+        /**
+         * Called once when a finite source has delivered its last frame.
+         */
+        void onSourceEnded();
+
+        void onSourceError(String error);
+    }
+
+    void start(Listener listener);
+
+    /**
+     * Stops delivery and waits for the source thread to finish.
+     */
+    void stop();
+
+    boolean isRunning();
+
+    /**
+     * @return frames delivered since start()
+     */
+    long getFramesDelivered();
+}
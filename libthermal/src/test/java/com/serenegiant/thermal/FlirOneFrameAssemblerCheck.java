@@ -0,0 +1,243 @@
+package com.serenegiant.thermal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a synthetic EP 0x85 stream built around a recorded thermal block through
+ * {@link FlirOneFrameAssembler} in odd-sized chunks and checks every payload and counter:
+ * garbage and a broken partial magic before the first frame, false headers that have to be
+ * rescanned, magic found mid-chunk, headers split across chunks, and a truncated frame that
+ * the next header at a chunk start resyncs from. The clean part of the stream is then replayed
+ * through {@link FileThermalSource#forFlirOneStream(File)} and its first frame checked against
+ * the unpacked reference.
+ *
+ * Usage: FlirOneFrameAssemblerCheck thermal-block [expected]
+ * prints every mismatch and exits with 1 if there was any.
+ *
+ * ./gradlew :libthermal:assemblerCheck runs it on thermal_1.raw and thermal_unpacked.raw,
+ * ./gradlew :libthermal:check includes it.
+ */
+public class FlirOneFrameAssemblerCheck {
+    private static final byte[] MAGIC = {(byte)0xEF, (byte)0xBE, 0x00, 0x00};
+    // first frame's header straddles the 29 + 7 + 11 boundary, the 1 byte chunks split others
+    private static final int[] CHUNK_SIZES = {29, 7, 11, 1, 4093, 509};
+    private static final int[] SMALL_CHUNK_SIZES = {3, 1, 2};
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("usage: FlirOneFrameAssemblerCheck thermal-block [expected]");
+            System.exit(2);
+        }
+        final byte[] thermal = readFile(new File(args[0]));
+        final byte[] expected = args.length > 1 ? readFile(new File(args[1])) : null;
+
+        final byte[][] payloads = new byte[5][];
+        final int[][] sizes = new int[5][];
+        for (int i = 0; i < payloads.length; i++) {
+            final byte[] jpg = pattern(700 + 97 * i, 0x10 + i);
+            final byte[] status = ("{\"shutterState\":\"ON\",\"frame\":" + i + "}").getBytes("US-ASCII");
+            payloads[i] = concat(thermal, jpg, status);
+            sizes[i] = new int[] {thermal.length, jpg.length, status.length};
+        }
+
+        // garbage with a partial magic that breaks off, then a magic whose sizes do not add up,
+        // then a bare magic whose sizes come from the real header after it, found only by the rescan
+        final byte[] garbage = {0x01, 0x02, (byte)0xEF, (byte)0xBE, 0x00, 0x07, 0x55, (byte)0xEF, 0x33, 0x00, 0x00, 0x21, 0x42};
+        final byte[] falseHeader = header(100, 80, 40, 10);
+        // frame 2 is cut short, frame 3 has to start at a chunk boundary for feed() to resync on it
+        final byte[] truncated = Arrays.copyOf(frame(payloads[2], sizes[2]), FlirOneFrameAssembler.HEADER_SIZE + 1000);
+        final byte[] clean = concat(garbage, falseHeader, MAGIC, frame(payloads[0], sizes[0]),
+            new byte[] {(byte)0xEF, (byte)0xBE, 0x00, 0x11}, frame(payloads[1], sizes[1]));
+
+        final List<FlirOneFrame> frames = new ArrayList<FlirOneFrame>();
+        final FlirOneFrameAssembler assembler = new FlirOneFrameAssembler(
+            new FlirOneFramePool(8, FlirOneFrameAssembler.DEFAULT_MAX_FRAME_SIZE));
+        assembler.setListener(new FlirOneFrameAssembler.FrameListener() {
+            @Override
+            public void onFrameAssembled(FlirOneFrame frame) {
+                frames.add(frame);
+            }
+        });
+        feed(assembler, concat(clean, truncated), CHUNK_SIZES);
+        feed(assembler, frame(payloads[3], sizes[3]), CHUNK_SIZES);
+        feed(assembler, frame(payloads[4], sizes[4]), SMALL_CHUNK_SIZES);
+
+        final int[] delivered = {0, 1, 3, 4};
+        final long[] sequences = {1, 2, 4, 5};
+        expect("frames assembled", delivered.length, assembler.getFramesAssembled());
+        expect("frames delivered", delivered.length, frames.size());
+        for (int i = 0; i < Math.min(delivered.length, frames.size()); i++) {
+            final FlirOneFrame frame = frames.get(i);
+            final int n = delivered[i];
+            expect("sequence of frame " + n, sequences[i], frame.getSequenceNumber());
+            expect("thermal size of frame " + n, sizes[n][0], frame.getThermalSize());
+            expect("jpeg size of frame " + n, sizes[n][1], frame.getJpegSize());
+            expect("status size of frame " + n, sizes[n][2], frame.getStatusSize());
+            expect("byte count of frame " + n,
+                FlirOneFrameAssembler.HEADER_SIZE + payloads[n].length, frame.getByteCount());
+            if (!Arrays.equals(payloads[n], Arrays.copyOf(frame.getData(), payloads[n].length))) {
+                fail("payload of frame " + n + " differs");
+            }
+            frame.release();
+        }
+        // both false headers and the truncated frame
+        expect("resyncs", 3, assembler.getResyncCount());
+        expect("frames dropped", 1, assembler.getFramesDropped());
+        expect("frames overflowed", 0, assembler.getFramesOverflowed());
+        expect("sequence number", 5, assembler.getSequenceNumber());
+
+        if (expected != null) {
+            checkStreamReplay(clean, expected);
+        }
+
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("FlirOneFrameAssembler: all checks passed, frames=" + assembler.getFramesAssembled()
+            + ", chunks=" + assembler.getChunksFed() + ", discarded=" + assembler.getBytesDiscarded());
+    }
+
+    /**
+     * Replays the stream from a file in 509 byte chunks, the first frame must unpack to expected.
+     */
+    private static void checkStreamReplay(byte[] stream, byte[] expected) throws Exception {
+        final File file = File.createTempFile("flirone", ".raw");
+        try {
+            final OutputStream out = new FileOutputStream(file);
+            try {
+                out.write(stream);
+            } finally {
+                out.close();
+            }
+            final FileThermalSource source = FileThermalSource.forFlirOneStream(file);
+            source.setChunkSize(509);
+            final CountDownLatch done = new CountDownLatch(1);
+            final boolean[] firstMatches = new boolean[1];
+            final String[] error = new String[1];
+            source.start(new ThermalSource.Listener() {
+                @Override
+                public void onThermalFrame(byte[] y16, int width, int height, long timestampNanos) {
+                    if (source.getFramesDelivered() == 0) {
+                        firstMatches[0] = expected.length == width * height * 2
+                            && Arrays.equals(expected, Arrays.copyOf(y16, expected.length));
+                    }
+                }
+
+                @Override
+                public void onSourceEnded() {
+                    done.countDown();
+                }
+
+                @Override
+                public void onSourceError(String message) {
+                    error[0] = message;
+                    done.countDown();
+                }
+            });
+            if (!done.await(10, TimeUnit.SECONDS)) {
+                fail("stream replay did not end");
+            }
+            source.stop();
+            if (error[0] != null) {
+                fail(error[0]);
+            }
+            expect("replayed frames", 2, source.getFramesDelivered());
+            if (!firstMatches[0]) {
+                fail("first replayed frame does not match the reference");
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void feed(FlirOneFrameAssembler assembler, byte[] data, int[] chunkSizes) {
+        long timestamp = 0;
+        for (int pos = 0, i = 0; pos < data.length; i++) {
+            final int n = Math.min(chunkSizes[i % chunkSizes.length], data.length - pos);
+            // through a copy, so a chunk can not be read beyond its length
+            assembler.feed(Arrays.copyOfRange(data, pos, pos + n), 0, n, timestamp++);
+            pos += n;
+        }
+    }
+
+    private static byte[] header(int frameSize, int thermalSize, int jpgSize, int statusSize) {
+        final byte[] header = new byte[FlirOneFrameAssembler.HEADER_SIZE];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        putInt32(header, 8, frameSize);
+        putInt32(header, 12, thermalSize);
+        putInt32(header, 16, jpgSize);
+        putInt32(header, 20, statusSize);
+        return header;
+    }
+
+    private static byte[] frame(byte[] payload, int[] sizes) {
+        return concat(header(payload.length, sizes[0], sizes[1], sizes[2]), payload);
+    }
+
+    private static byte[] pattern(int length, int seed) {
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            // stays below 0xEF, so the pattern never looks like a magic
+            data[i] = (byte) ((seed + i * 7) % 0xE0);
+        }
+        return data;
+    }
+
+    private static void putInt32(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void expect(String what, long expected, long actual) {
+        if (expected != actual) {
+            fail(what + ": expected " + expected + ", got " + actual);
+        }
+    }
+
+    private static void fail(String message) {
+        failures++;
+        System.out.println("FAILED " + message);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        final byte[] data = new byte[(int) file.length()];
+        final InputStream in = new FileInputStream(file);
+        try {
+            int pos = 0;
+            while (pos < data.length) {
+                final int n = in.read(data, pos, data.length - pos);
+                if (n < 0) {
+                    throw new IOException("truncated " + file);
+                }
+                pos += n;
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+}
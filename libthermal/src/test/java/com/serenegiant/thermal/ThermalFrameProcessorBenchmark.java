@@ -0,0 +1,95 @@
+package com.serenegiant.thermal;
+
+import java.util.Locale;
+
+/**
+ * Per-frame cost of the AGC modes of {@link ThermalFrameProcessor} on synthetic 640x512 Y16
+ * scenes: a room temperature gradient with sensor noise and a small hot object that drifts.
+ *
+ * Run with ./gradlew :libthermal:benchmark, or on the device itself after dx-ing the classes,
+ * e.g. adb shell dalvikvm -cp /sdcard/libthermal-bench.jar com.serenegiant.thermal.ThermalFrameProcessorBenchmark
+ *
+ * Linear without the fused table is the render loop the app shipped with and sets the budget;
+ * exits with 1 if plateau equalization is slower than that.
+ *
+ * Only the Java render path is measured, i.e. the FLIR ONE and a Boson without Y16. A Boson
+ * previewing Y16 is colorized by the native ThermalColorizer, which is not covered here.
+ */
+public class ThermalFrameProcessorBenchmark {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 512;
+    private static final int SCENES = 8;
+    private static final int WARMUP_FRAMES = 200;
+    private static final int FRAMES = 500;
+    // tolerated timing noise before plateau counts as over budget
+    private static final double BUDGET_SLACK = 1.05;
+
+    public static void main(String[] args) {
+        final byte[][] scenes = createScenes();
+        final int[] argb = new int[WIDTH * HEIGHT];
+
+        final double linear = run("linear", scenes, argb, ThermalFrameProcessor.AGC_LINEAR, false, false);
+        final double fused = run("linear fused", scenes, argb, ThermalFrameProcessor.AGC_LINEAR, true, false);
+        final double plateau = run("plateau", scenes, argb, ThermalFrameProcessor.AGC_PLATEAU, false, false);
+        run("linear temporal", scenes, argb, ThermalFrameProcessor.AGC_LINEAR, false, true);
+        run("plateau temporal", scenes, argb, ThermalFrameProcessor.AGC_PLATEAU, false, true);
+
+        System.out.println(String.format(Locale.US,
+            "plateau/linear %.2f, fused/linear %.2f", plateau / linear, fused / linear));
+        if (plateau > linear * BUDGET_SLACK) {
+            System.out.println("plateau equalization exceeds the linear per-frame budget");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return average milliseconds per frame
+     */
+    private static double run(String name, byte[][] scenes, int[] argb,
+            int agcMode, boolean fused, boolean temporal) {
+        final ThermalFrameProcessor processor = new ThermalFrameProcessor();
+        processor.setAgcMode(agcMode);
+        processor.setFusedLutEnabled(fused);
+        processor.setTemporalAgc(temporal);
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            processor.process(scenes[i % SCENES], WIDTH, HEIGHT, argb);
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            processor.process(scenes[i % SCENES], WIDTH, HEIGHT, argb);
+        }
+        final double ms = (System.nanoTime() - start) / 1e6 / FRAMES;
+        System.out.println(String.format(Locale.US, "%-16s %7.3f ms/frame (checksum %08x)",
+            name, ms, argb[(HEIGHT / 2) * WIDTH + WIDTH / 2]));
+        return ms;
+    }
+
+    /**
+     * Centi-Kelvin scenes around 20C, the hot object is about 90C.
+     */
+    private static byte[][] createScenes() {
+        final byte[][] scenes = new byte[SCENES][WIDTH * HEIGHT * 2];
+        int seed = 0x2545F491;
+        for (int s = 0; s < SCENES; s++) {
+            final byte[] frame = scenes[s];
+            final int hotX = WIDTH / 4 + s * 16;
+            final int hotY = HEIGHT / 3;
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    seed ^= seed << 13;
+                    seed ^= seed >>> 17;
+                    seed ^= seed << 5;
+                    int raw = 29100 + (y * 400) / HEIGHT + s * 2 + (seed & 0x1F);
+                    final int dx = x - hotX, dy = y - hotY;
+                    if (dx * dx + dy * dy < 24 * 24) {
+                        raw += 7000;
+                    }
+                    final int offset = (y * WIDTH + x) * 2;
+                    frame[offset] = (byte) raw;
+                    frame[offset + 1] = (byte) (raw >> 8);
+                }
+            }
+        }
+        return scenes;
+    }
+}
@@ -0,0 +1,124 @@
+package com.serenegiant.thermal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Replays a recorded FLIR ONE capture through {@link FileThermalSource} and
+ * {@link ThermalFrameProcessor} as fast as possible, without a camera.
+ *
+ * Usage: ThermalReplay recording [format [frames [expected]]]
+ * - format: stream (raw EP 0x85 transfers), blocks (padded thermal blocks) or y16
+ * - frames: frames to process, the recording loops until then
+ * - expected: dense little endian Y16 file the first frame must match, exits with 1 if not
+ *
+ * ./gradlew :libthermal:replay runs the thermal_1.raw capture of the repository root and
+ * checks it against thermal_unpacked.raw.
+ */
+public class ThermalReplay {
+    private static final int DEFAULT_FRAMES = 2000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("usage: ThermalReplay recording [stream|blocks|y16 [frames [expected]]]");
+            System.exit(2);
+        }
+        final File recording = new File(args[0]);
+        final String format = args.length > 1 ? args[1] : "blocks";
+        final long frames = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_FRAMES;
+        final byte[] expected = args.length > 3 ? readFile(new File(args[3])) : null;
+
+        final FileThermalSource source;
+        if ("stream".equals(format)) {
+            source = FileThermalSource.forFlirOneStream(recording);
+        } else if ("blocks".equals(format)) {
+            source = FileThermalSource.forFlirOneThermalBlocks(recording, (int) recording.length());
+        } else if ("y16".equals(format)) {
+            source = FileThermalSource.forY16(recording, FlirOneThermalUnpacker.WIDTH, FlirOneThermalUnpacker.HEIGHT);
+        } else {
+            throw new IllegalArgumentException("unknown format " + format);
+        }
+        source.setLooping(true);
+
+        final ThermalFrameProcessor processor = new ThermalFrameProcessor();
+        processor.setTemporalAgc(true);
+        final CountDownLatch done = new CountDownLatch(1);
+        final long[] processed = new long[1];
+        final boolean[] mismatch = new boolean[1];
+        final String[] error = new String[1];
+        source.start(new ThermalSource.Listener() {
+            private int[] argb = new int[0];
+
+            @Override
+            public void onThermalFrame(byte[] y16, int width, int height, long timestampNanos) {
+                final long index = processed[0];
+                if (index >= frames) {
+                    return;     // main thread is stopping the source
+                }
+                if (index == 0 && expected != null) {
+                    mismatch[0] = expected.length != width * height * 2
+                        || !Arrays.equals(expected, Arrays.copyOf(y16, expected.length));
+                }
+                if (argb.length < width * height) {
+                    argb = new int[width * height];
+                }
+                processor.process(y16, width, height, argb);
+                processed[0] = index + 1;
+                if (processed[0] >= frames) {
+                    done.countDown();
+                }
+            }
+
+            @Override
+            public void onSourceEnded() {
+                done.countDown();
+            }
+
+            @Override
+            public void onSourceError(String message) {
+                error[0] = message;
+                done.countDown();
+            }
+        });
+        done.await();
+        // stop from here, not from the source thread, so it waits for the source to finish
+        source.stop();
+
+        if (error[0] != null) {
+            System.out.println(error[0]);
+            System.exit(1);
+        }
+        System.out.println(String.format(Locale.US, "%s: %d frames of %dx%d, %.1f fps, window %d..%d",
+            recording.getName(), processed[0], source.getWidth(), source.getHeight(),
+            source.getMeasuredFrameRate(), processor.getAgcWindowMin(), processor.getAgcWindowMax()));
+        if (expected != null) {
+            System.out.println(mismatch[0] ? "first frame differs from the expected frame" : "first frame matches");
+            if (mismatch[0]) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        final byte[] data = new byte[(int) file.length()];
+        final InputStream in = new FileInputStream(file);
+        try {
+            int pos = 0;
+            while (pos < data.length) {
+                final int n = in.read(data, pos, data.length - pos);
+                if (n < 0) {
+                    break;
+                }
+                pos += n;
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+}
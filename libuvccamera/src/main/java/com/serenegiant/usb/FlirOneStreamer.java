@@ -0,0 +1,180 @@
+/*
+ *  UVCCamera
+ *  library and sample to access to UVC web camera on non-rooted Android device
+ *
+ * Copyright (c) 2014-2017 saki t_saki@serenegiant.com
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  All files in the folder are under this Apache License, Version 2.0.
+ *  Files in the libjpeg-turbo, libusb, libuvc, rapidjson folder
+ *  may have a different license, see the respective files.
+ */
+
+
+package com.serenegiant.usb;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.serenegiant.usb.USBMonitor.UsbControlBlock;
+
+/**
+ * Streams the FLIR ONE video endpoint (EP 0x85) through libusb async transfers on the
+ * file descriptor of an already opened UsbControlBlock.
+ * Frames are assembled in native code and delivered with one JNI call per frame.
+ * The camera must already be initialized (interfaces claimed, FRAME stream started)
+ * through the Java connection, this class only reads video data.
+ */
+public class FlirOneStreamer {
+	private static final boolean DEBUG = false;
+	private static final String TAG = FlirOneStreamer.class.getSimpleName();
+	private static final String DEFAULT_USBFS = "/dev/bus/usb";
+
+	public static final int DEFAULT_TRANSFERS = 8;
+	public static final int DEFAULT_TRANSFER_SIZE = 16384;
+
+	// statistics indices, same order as FLIR_ONE_STAT_* in FlirOneStreamer.h
+	public static final int STAT_FRAMES = 0;
+	public static final int STAT_DROPPED = 1;
+	public static final int STAT_RESYNCS = 2;
+	public static final int STAT_TRANSFERS = 3;
+	public static final int STAT_BYTES = 4;
+	public static final int STAT_OVERFLOWS = 5;	// part of STAT_DROPPED, frames dropped for a slow callback
+	public static final int STAT_NUM = 6;
+
+	private static boolean isLoaded;
+	static {
+		if (!isLoaded) {
+			// JNI_OnLoad of libUVCCamera registers the natives of this class as well
+			System.loadLibrary("jpeg-turbo1500");
+			System.loadLibrary("usb100");
+			System.loadLibrary("uvc");
+			System.loadLibrary("UVCCamera");
+			isLoaded = true;
+		}
+	}
+
+	protected long mNativePtr;
+	private UsbControlBlock mCtrlBlock;
+
+	public FlirOneStreamer() {
+		mNativePtr = nativeCreate();
+	}
+
+	/**
+	 * connect to the FLIR ONE on the file descriptor of ctrlBlock.
+	 * Unlike UVCCamera this does not clone ctrlBlock: a clone is a new usbfs file that
+	 * could not use the interfaces claimed on the original connection.
+	 * The caller keeps ownership of ctrlBlock and must close it after this streamer.
+	 * @return 0 on success, negative libusb error code otherwise
+	 */
+	public synchronized int open(final UsbControlBlock ctrlBlock) {
+		int result;
+		try {
+			mCtrlBlock = ctrlBlock;
+			result = nativeConnect(mNativePtr,
+				mCtrlBlock.getVenderId(), mCtrlBlock.getProductId(),
+				mCtrlBlock.getFileDescriptor(),
+				mCtrlBlock.getBusNum(),
+				mCtrlBlock.getDevNum(),
+				getUSBFSName(mCtrlBlock));
+		} catch (final Exception e) {
+			Log.w(TAG, e);
+			result = -1;
+		}
+		if (DEBUG) Log.v(TAG, "open:result=" + result);
+		return result;
+	}
+
+	/**
+	 * start streaming, callback is called on the native callback thread
+	 * @param numTransfers number of libusb transfers kept in flight
+	 * @param transferSize bytes per transfer, rounded down to a multiple of 512
+	 * @return 0 on success
+	 */
+	public synchronized int start(final IFlirOneFrameCallback callback, final int numTransfers, final int transferSize) {
+		if (mNativePtr == 0) {
+			return -1;
+		}
+		return nativeStart(mNativePtr, callback, numTransfers, transferSize);
+	}
+
+	public synchronized void stop() {
+		if (mNativePtr != 0) {
+			nativeStop(mNativePtr);
+		}
+	}
+
+	/**
+	 * @return false before start() and once every transfer has ended, after which no frame
+	 * arrives until stop() and start() are called again
+	 */
+	public synchronized boolean isRunning() {
+		return (mNativePtr != 0) && nativeIsRunning(mNativePtr);
+	}
+
+	/**
+	 * @param stats array of at least STAT_NUM elements, filled in STAT_* order
+	 * @return number of values written
+	 */
+	public synchronized int getStatistics(final long[] stats) {
+		if (mNativePtr == 0) {
+			return 0;
+		}
+		return nativeGetStatistics(mNativePtr, stats);
+	}
+
+	public synchronized void close() {
+		if (mNativePtr != 0) {
+			nativeRelease(mNativePtr);
+		}
+		mCtrlBlock = null;
+	}
+
+	public synchronized void destroy() {
+		close();
+		if (mNativePtr != 0) {
+			nativeDestroy(mNativePtr);
+			mNativePtr = 0;
+		}
+	}
+
+	private final String getUSBFSName(final UsbControlBlock ctrlBlock) {
+		String result = null;
+		final String name = ctrlBlock.getDeviceName();
+		final String[] v = !TextUtils.isEmpty(name) ? name.split("/") : null;
+		if ((v != null) && (v.length > 2)) {
+			final StringBuilder sb = new StringBuilder(v[0]);
+			for (int i = 1; i < v.length - 2; i++)
+				sb.append("/").append(v[i]);
+			result = sb.toString();
+		}
+		if (TextUtils.isEmpty(result)) {
+			Log.w(TAG, "failed to get USBFS path, try to use default path:" + name);
+			result = DEFAULT_USBFS;
+		}
+		return result;
+	}
+
+	private final native long nativeCreate();
+	private final native void nativeDestroy(final long id_streamer);
+
+	private final native int nativeConnect(long id_streamer, int venderId, int productId, int fileDescriptor, int busNum, int devAddr, String usbfs);
+	private final native int nativeRelease(final long id_streamer);
+
+	private final native int nativeStart(final long id_streamer, final IFlirOneFrameCallback callback, final int numTransfers, final int transferSize);
+	private final native int nativeStop(final long id_streamer);
+	private final native boolean nativeIsRunning(final long id_streamer);
+	private final native int nativeGetStatistics(final long id_streamer, final long[] stats);
+}
@@ -0,0 +1,46 @@
+/*
+ *  UVCCamera
+ *  library and sample to access to UVC web camera on non-rooted Android device
+ *
+ * Copyright (c) 2014-2017 saki t_saki@serenegiant.com
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  All files in the folder are under this Apache License, Version 2.0.
+ *  Files in the libjpeg-turbo, libusb, libuvc, rapidjson folder
+ *  may have a different license, see the respective files.
+ */
+
+
+package com.serenegiant.usb;
+
+import java.nio.ByteBuffer;
+/**
+ * Callback interface for FlirOneStreamer class
+ */
+public interface IFlirOneFrameCallback {
+	/**
+	 * This method is called from native library via JNI on the streamer's callback thread,
+	 * once per assembled frame. Frames are dropped if this method takes a time.
+	 * @param frame direct ByteBuffer of the frame payload (thermal block, JPEG, status JSON),
+	 * only valid until this method returns
+	 * @param thermalSize bytes of the thermal block at the start of the payload
+	 * @param jpgSize bytes of the JPEG following the thermal block
+	 * @param statusSize bytes of the status JSON following the JPEG
+	 * @param sequence frame header count, a gap to the previous frame is the number of frames lost
+	 * @param timestampNanos SystemClock#elapsedRealtimeNanos when the frame's first transfer completed
+	 * @param chunkCount transfers the frame was assembled from
+	 */
+	public void onFrame(ByteBuffer frame, int thermalSize, int jpgSize, int statusSize,
+		long sequence, long timestampNanos, int chunkCount);
+}
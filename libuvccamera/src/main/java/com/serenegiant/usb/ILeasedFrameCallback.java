@@ -0,0 +1,43 @@
+/*
+ *  UVCCamera
+ *  library and sample to access to UVC web camera on non-rooted Android device
+ *
+ * Copyright (c) 2014-2017 saki t_saki@serenegiant.com
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ *  All files in the folder are under this Apache License, Version 2.0.
+ *  Files in the libjpeg-turbo, libusb, libuvc, rapidjson folder
+ *  may have a different license, see the respective files.
+ */
+
+package com.serenegiant.usb;
+
+import java.nio.ByteBuffer;
+/**
+ * Callback interface for UVCCamera class, zero copy variant of IFrameCallback.
+ * Frames are lent from the native frame pool, set with UVCCamera#setLeasedFrameCallback
+ */
+public interface ILeasedFrameCallback {
+	/**
+	 * This method is called from native library via JNI on the capture thread, like IFrameCallback#onFrame.
+	 * Unlike IFrameCallback the frame stays valid after this method returns, until it is handed back
+	 * with UVCCamera#releaseFrame(handle), which may be called from any thread.
+	 * Every frame must be released exactly once. Only a few frames can be held at a time,
+	 * newer frames are dropped until one is released.
+	 * Do not touch the buffer after releasing it or after UVCCamera#destroy.
+	 * @param frame direct ByteBuffer on the native frame
+	 * @param handle pass this to UVCCamera#releaseFrame
+	 */
+	public void onFrame(ByteBuffer frame, long handle);
+}
@@ -53,6 +53,7 @@ public class UVCCamera {
 
 	public static final int FRAME_FORMAT_YUYV = 0;
 	public static final int FRAME_FORMAT_MJPEG = 1;
+	public static final int FRAME_FORMAT_Y16 = 2;		// 16-bit luminance, e.g. radiometric thermal cameras
 
 	public static final int PIXEL_FORMAT_RAW = 0;
 	public static final int PIXEL_FORMAT_YUV = 1;
@@ -60,6 +61,24 @@ public class UVCCamera {
 	public static final int PIXEL_FORMAT_RGBX = 3;
 	public static final int PIXEL_FORMAT_YUV420SP = 4;
 	public static final int PIXEL_FORMAT_NV21 = 5;		// = YVU420SemiPlanar
+	public static final int PIXEL_FORMAT_Y16 = 6;		// 16-bit little endian luminance without conversion, use with FRAME_FORMAT_Y16
+
+	// palettes for FRAME_FORMAT_Y16 preview
+	public static final int THERMAL_PALETTE_IRON = 0;
+	public static final int THERMAL_PALETTE_RAINBOW = 1;
+	public static final int THERMAL_PALETTE_GRAY = 2;
+	// contrast of FRAME_FORMAT_Y16 preview, same values as ThermalFrameProcessor#AGC_XXX
+	public static final int THERMAL_AGC_LINEAR = 0;
+	public static final int THERMAL_AGC_PLATEAU = 1;
+
+	// preview statistics indices, same order as PREVIEW_STAT_* in UVCPreview.h
+	public static final int PREVIEW_STAT_FRAMES = 0;
+	public static final int PREVIEW_STAT_PREVIEW_DROPS = 1;		// preview queue full
+	public static final int PREVIEW_STAT_CAPTURE_DROPS = 2;		// capture queue full or superseded by a newer frame
+	public static final int PREVIEW_STAT_POOL_MISSES = 3;		// frame pool empty, a frame was allocated
+	public static final int PREVIEW_STAT_POOL_OVERFLOWS = 4;	// frame pool full, a frame was freed
+	public static final int PREVIEW_STAT_LEASE_DROPS = 5;		// ILeasedFrameCallback held too many frames
+	public static final int PREVIEW_STAT_NUM = 6;
 
 	//--------------------------------------------------------------------------------
     public static final int	CTRL_SCANNING		= 0x00000001;	// D0:  Scanning Mode
@@ -293,7 +312,7 @@ public class UVCCamera {
 	 * Set preview size and preview mode
 	 * @param width
 	 * @param height
-	 * @param frameFormat either FRAME_FORMAT_YUYV(0) or FRAME_FORMAT_MJPEG(1)
+	 * @param frameFormat FRAME_FORMAT_YUYV(0), FRAME_FORMAT_MJPEG(1) or FRAME_FORMAT_Y16(2)
 	 */
 	public void setPreviewSize(final int width, final int height, final int frameFormat) {
 		setPreviewSize(width, height, DEFAULT_PREVIEW_MIN_FPS, DEFAULT_PREVIEW_MAX_FPS, frameFormat, mCurrentBandwidthFactor);
@@ -303,7 +322,7 @@ public class UVCCamera {
 	 * Set preview size and preview mode
 	 * @param width
 	   @param height
-	   @param frameFormat either FRAME_FORMAT_YUYV(0) or FRAME_FORMAT_MJPEG(1)
+	   @param frameFormat FRAME_FORMAT_YUYV(0), FRAME_FORMAT_MJPEG(1) or FRAME_FORMAT_Y16(2)
 	   @param bandwidth [0.0f,1.0f]
 	 */
 	public void setPreviewSize(final int width, final int height, final int frameFormat, final float bandwidth) {
@@ -316,7 +335,7 @@ public class UVCCamera {
 	 * @param height
 	 * @param min_fps
 	 * @param max_fps
-	 * @param frameFormat either FRAME_FORMAT_YUYV(0) or FRAME_FORMAT_MJPEG(1)
+	 * @param frameFormat FRAME_FORMAT_YUYV(0), FRAME_FORMAT_MJPEG(1) or FRAME_FORMAT_Y16(2)
 	 * @param bandwidthFactor
 	 */
 	public void setPreviewSize(final int width, final int height, final int min_fps, final int max_fps, final int frameFormat, final float bandwidthFactor) {
@@ -334,7 +353,7 @@ public class UVCCamera {
 	}
 
 	public List<Size> getSupportedSizeList() {
-		final int type = (mCurrentFrameFormat > 0) ? 6 : 4;
+		final int type = (mCurrentFrameFormat == FRAME_FORMAT_MJPEG) ? 6 : 4;
 		return getSupportedSize(type, mSupportedSize);
 	}
 
@@ -408,6 +427,77 @@ public class UVCCamera {
     	}
     }
 
+    /**
+     * set frame callback that keeps the native frame buffers until they are released,
+     * replaces any callback set with #setFrameCallback
+     * @param callback
+     * @param pixelFormat
+     */
+    public void setLeasedFrameCallback(final ILeasedFrameCallback callback, final int pixelFormat) {
+    	if (mNativePtr != 0) {
+        	nativeSetLeasedFrameCallback(mNativePtr, callback, pixelFormat);
+    	}
+    }
+
+    /**
+     * hand a frame from ILeasedFrameCallback back to the native pool, any thread
+     * @param handle
+     */
+    public void releaseFrame(final long handle) {
+    	if (mNativePtr != 0) {
+    		nativeReleaseFrame(mNativePtr, handle);
+    	}
+    }
+
+    /**
+     * set palette used to draw FRAME_FORMAT_Y16 frames to the preview surface,
+     * they are colorized natively with auto contrast
+     * @param palette THERMAL_PALETTE_IRON, THERMAL_PALETTE_RAINBOW or THERMAL_PALETTE_GRAY
+     */
+    public void setThermalPalette(final int palette) {
+    	if (mNativePtr != 0) {
+    		nativeSetThermalPalette(mNativePtr, palette);
+    	}
+    }
+
+    /**
+     * set contrast mode used to draw FRAME_FORMAT_Y16 frames to the preview surface
+     * @param agcMode THERMAL_AGC_LINEAR (min/max stretch) or THERMAL_AGC_PLATEAU (plateau histogram equalization)
+     */
+    public void setThermalAgcMode(final int agcMode) {
+    	if (mNativePtr != 0) {
+    		nativeSetThermalAgcMode(mNativePtr, agcMode);
+    	}
+    }
+
+    /**
+     * set sizes of the native frame queues and frame pool, each rounded up to a power of two
+     * only while the preview is stopped
+     * @param previewQueueSize frames waiting for the preview thread
+     * @param captureQueueSize frames waiting for the capture/callback thread
+     * @param poolSize frames kept for reuse
+     * @throws IllegalStateException if the preview is running
+     */
+    public synchronized void setFrameBuffering(final int previewQueueSize, final int captureQueueSize, final int poolSize) {
+    	if ((previewQueueSize < 1) || (captureQueueSize < 1) || (poolSize < 1))
+    		throw new IllegalArgumentException("invalid frame buffering");
+    	if (mNativePtr != 0) {
+    		if (nativeSetFrameBuffering(mNativePtr, previewQueueSize, captureQueueSize, poolSize) != 0)
+    			throw new IllegalStateException("Failed to set frame buffering, stop preview first");
+    	}
+    }
+
+    /**
+     * @param stats array of at least PREVIEW_STAT_NUM elements, filled in PREVIEW_STAT_* order
+     * @return number of values written
+     */
+    public synchronized int getPreviewStatistics(final long[] stats) {
+    	if (mNativePtr == 0) {
+    		return 0;
+    	}
+    	return nativeGetPreviewStatistics(mNativePtr, stats);
+    }
+
     /**
      * start preview
      */
@@ -1041,6 +1131,12 @@ public class UVCCamera {
     private static final native int nativeStopPreview(final long id_camera);
     private static final native int nativeSetPreviewDisplay(final long id_camera, final Surface surface);
     private static final native int nativeSetFrameCallback(final long mNativePtr, final IFrameCallback callback, final int pixelFormat);
+    private static final native int nativeSetLeasedFrameCallback(final long mNativePtr, final ILeasedFrameCallback callback, final int pixelFormat);
+    private static final native int nativeReleaseFrame(final long mNativePtr, final long handle);
+    private static final native int nativeSetThermalPalette(final long mNativePtr, final int palette);
+    private static final native int nativeSetThermalAgcMode(final long mNativePtr, final int agcMode);
+    private static final native int nativeSetFrameBuffering(final long mNativePtr, final int previewQueueSize, final int captureQueueSize, final int poolSize);
+    private static final native int nativeGetPreviewStatistics(final long mNativePtr, final long[] stats);
 
 //**********************************************************************
     /**
@@ -52,15 +52,22 @@ LOCAL_SHARED_LIBRARIES += usb100 uvc
 
 LOCAL_ARM_MODE := arm
 
+# pipeline/ is not built: it needs Mutex.h, Condition.h, Timers.h, common_utils.h,
+# UVCCameraControl.h and SQLite from the upstream common library, none of which are
+# in this tree, so there is no Java API for it either. Frames reach several Java
+# consumers without extra copies through UVCCamera#setLeasedFrameCallback instead.
 LOCAL_SRC_FILES := \
 		_onload.cpp \
 		utilbase.cpp \
 		UVCCamera.cpp \
 		UVCPreview.cpp \
+		ThermalColorizer.cpp \
 		UVCButtonCallback.cpp \
 		UVCStatusCallback.cpp \
 		Parameters.cpp \
-		serenegiant_usb_UVCCamera.cpp
+		FlirOneStreamer.cpp \
+		serenegiant_usb_UVCCamera.cpp \
+		serenegiant_usb_FlirOneStreamer.cpp
 
 LOCAL_MODULE    := UVCCamera
 include $(BUILD_SHARED_LIBRARY)
@@ -0,0 +1,684 @@
+/*
+ * UVCCamera
+ * library and sample to access to UVC web camera on non-rooted Android device
+ *
+ * Copyright (c) 2014-2017 saki t_saki@serenegiant.com
+ *
+ * File name: FlirOneStreamer.cpp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ * All files in the folder are under this Apache License, Version 2.0.
+ * Files in the jni/libjpeg, jni/libusb, jin/libuvc, jni/rapidjson folder may have a different license, see the respective files.
+*/
+
+#include <stdlib.h>
+#include <string.h>
+#include <unistd.h>
+#include <time.h>
+
+#if 1	// set 1 if you don't need debug log
+	#ifndef LOG_NDEBUG
+		#define	LOG_NDEBUG		// w/o LOGV/LOGD/MARK
+	#endif
+	#undef USE_LOGALL
+#else
+	#define USE_LOGALL
+	#undef LOG_NDEBUG
+//	#undef NDEBUG
+#endif
+
+#include "utilbase.h"
+#include "FlirOneStreamer.h"
+
+#define	LOCAL_DEBUG 0
+#define FRAME_POOL_SZ 4
+#define EVENT_TIMEOUT_US 100000
+
+#define STATE_SEARCH 0
+#define STATE_HEADER 1
+#define STATE_PAYLOAD 2
+
+static const uint8_t MAGIC_BYTES[] = { 0xEF, 0xBE, 0x00, 0x00 };
+
+static inline uint32_t get_le32(const uint8_t *p) {
+	return p[0] | (p[1] << 8) | (p[2] << 16) | ((uint32_t)p[3] << 24);
+}
+
+/**
+ * same clock as SystemClock#elapsedRealtimeNanos
+ */
+static inline int64_t elapsed_realtime_nanos() {
+	struct timespec ts;
+	clock_gettime(CLOCK_BOOTTIME, &ts);
+	return (int64_t)ts.tv_sec * 1000000000LL + ts.tv_nsec;
+}
+
+FlirOneStreamer::FlirOneStreamer()
+:	mContext(NULL),
+	mDevice(NULL),
+	mDeviceHandle(NULL),
+	mFd(0),
+	mIsRunning(false),
+	mHasThreads(false),
+	mNumTransfers(0),
+	mTransferSize(0),
+	mTransfers(NULL),
+	mActiveTransfers(0),
+	mErrorRetries(0),
+	mReadyFrame(NULL),
+	mFrameCallbackObj(NULL),
+	mState(STATE_SEARCH),
+	mMagicMatched(0),
+	mHeaderPos(0),
+	mPayloadPos(0),
+	mCurrentFrame(NULL),
+	mSequence(0),
+	mChunkTimestamp(0),
+	mFrameTimestamp(0),
+	mFrameChunks(0) {
+
+	ENTER();
+	memset(&mSizes, 0, sizeof(mSizes));
+	memset(mStats, 0, sizeof(mStats));
+	iframecallback_fields.onFrame = NULL;
+	pthread_mutex_init(&transfer_mutex, NULL);
+	pthread_cond_init(&transfer_sync, NULL);
+	pthread_mutex_init(&frame_mutex, NULL);
+	pthread_cond_init(&frame_sync, NULL);
+	EXIT();
+}
+
+FlirOneStreamer::~FlirOneStreamer() {
+
+	ENTER();
+	release();
+	clear_pool();
+	pthread_mutex_destroy(&transfer_mutex);
+	pthread_cond_destroy(&transfer_sync);
+	pthread_mutex_destroy(&frame_mutex);
+	pthread_cond_destroy(&frame_sync);
+	EXIT();
+}
+
+/**
+ * change the running flag under frame_mutex so the callback thread can not miss the wakeup
+ */
+void FlirOneStreamer::setRunning(bool running) {
+	pthread_mutex_lock(&frame_mutex);
+	mIsRunning = running;
+	pthread_cond_broadcast(&frame_sync);
+	pthread_mutex_unlock(&frame_mutex);
+}
+
+/**
+ * open the FLIR ONE on the file descriptor of UsbDeviceConnection.
+ * Interfaces are claimed and the camera is initialized on the Java side,
+ * this only adds native access to the video endpoint.
+ */
+int FlirOneStreamer::connect(int vid, int pid, int fd, int busnum, int devaddr, const char *usbfs) {
+	ENTER();
+	int result = LIBUSB_ERROR_BUSY;
+	if (!mDeviceHandle && fd) {
+		if (UNLIKELY(!mContext)) {
+			result = (usbfs && strlen(usbfs) > 0) ? libusb_init2(&mContext, usbfs) : libusb_init(&mContext);
+			if (UNLIKELY(result < 0)) {
+				LOGE("failed to init libusb:err=%d", result);
+				mContext = NULL;
+				RETURN(result, int);
+			}
+		}
+		fd = dup(fd);
+		mDevice = libusb_get_device_with_fd(mContext, vid, pid, NULL, fd, busnum, devaddr);
+		if (LIKELY(mDevice)) {
+			result = libusb_open(mDevice, &mDeviceHandle);
+			if (LIKELY(!result)) {
+				// same usbfs file as the Java connection, so this only confirms its claim
+				result = libusb_claim_interface(mDeviceHandle, FLIR_ONE_VIDEO_INTERFACE);
+				if (UNLIKELY(result)) {
+					LOGW("could not claim video interface:err=%d", result);
+				}
+				mFd = fd;
+				RETURN(0, int);
+			}
+			LOGE("could not open FLIR ONE:err=%d", result);
+			libusb_unref_device(mDevice);
+			mDevice = NULL;
+			mDeviceHandle = NULL;
+		} else {
+			LOGE("could not find FLIR ONE");
+			result = LIBUSB_ERROR_NO_DEVICE;
+		}
+		close(fd);
+	} else {
+		LOGW("FLIR ONE is already opened. you should release first");
+	}
+	RETURN(result, int);
+}
+
+int FlirOneStreamer::release() {
+	ENTER();
+	stop();
+	if (LIKELY(mDeviceHandle)) {
+		// the interface stays claimed, the Java side releases it with its connection
+		libusb_close(mDeviceHandle);
+		mDeviceHandle = NULL;
+	}
+	if (LIKELY(mDevice)) {
+		libusb_unref_device(mDevice);
+		mDevice = NULL;
+	}
+	if (mFd) {
+		close(mFd);
+		mFd = 0;
+	}
+	if (mContext) {
+		libusb_exit(mContext);
+		mContext = NULL;
+	}
+	RETURN(0, int);
+}
+
+//======================================================================
+flir_one_frame_t *FlirOneStreamer::get_frame() {
+	flir_one_frame_t *frame = NULL;
+	pthread_mutex_lock(&frame_mutex);
+	{
+		if (!mFramePool.isEmpty()) {
+			frame = mFramePool.last();
+		}
+	}
+	pthread_mutex_unlock(&frame_mutex);
+	return frame;
+}
+
+void FlirOneStreamer::recycle_frame(flir_one_frame_t *frame) {
+	pthread_mutex_lock(&frame_mutex);
+	mFramePool.put(frame);
+	pthread_mutex_unlock(&frame_mutex);
+}
+
+void FlirOneStreamer::clear_pool() {
+	pthread_mutex_lock(&frame_mutex);
+	{
+		const int n = mFramePool.size();
+		for (int i = 0; i < n; i++) {
+			free(mFramePool[i]->data);
+			free(mFramePool[i]);
+		}
+		mFramePool.clear();
+	}
+	pthread_mutex_unlock(&frame_mutex);
+}
+
+//======================================================================
+int FlirOneStreamer::start(JNIEnv *env, jobject frame_callback_obj, int num_transfers, int transfer_size) {
+	ENTER();
+	int result = EXIT_FAILURE;
+	if (UNLIKELY(!mDeviceHandle || isRunning())) {
+		LOGW("not connected or already streaming");
+		RETURN(result, int);
+	}
+	if ((num_transfers < 1) || (num_transfers > FLIR_ONE_MAX_TRANSFERS)) {
+		num_transfers = FLIR_ONE_DEFAULT_TRANSFERS;
+	}
+	if (transfer_size < 512) {
+		transfer_size = FLIR_ONE_DEFAULT_TRANSFER_SIZE;
+	}
+	transfer_size &= ~511;
+
+	// get method IDs of Java object for callback
+	if (mFrameCallbackObj) {
+		env->DeleteGlobalRef(mFrameCallbackObj);
+		mFrameCallbackObj = NULL;
+	}
+	iframecallback_fields.onFrame = NULL;
+	if (frame_callback_obj) {
+		jclass clazz = env->GetObjectClass(frame_callback_obj);
+		if (LIKELY(clazz)) {
+			iframecallback_fields.onFrame = env->GetMethodID(clazz,
+				"onFrame", "(Ljava/nio/ByteBuffer;IIIJJI)V");
+			env->DeleteLocalRef(clazz);
+		}
+		env->ExceptionClear();
+		if (!iframecallback_fields.onFrame) {
+			LOGE("Can't find IFlirOneFrameCallback#onFrame");
+			RETURN(result, int);
+		}
+		mFrameCallbackObj = env->NewGlobalRef(frame_callback_obj);
+	}
+
+	// preallocate frames, nothing is allocated while streaming
+	if (mFramePool.isEmpty()) {
+		for (int i = 0; i < FRAME_POOL_SZ; i++) {
+			flir_one_frame_t *frame = (flir_one_frame_t *)calloc(1, sizeof(flir_one_frame_t));
+			if (LIKELY(frame)) {
+				frame->data = (uint8_t *)malloc(FLIR_ONE_MAX_FRAME_SIZE);
+			}
+			if (UNLIKELY(!frame || !frame->data)) {
+				LOGW("failed to allocate frame %d", i);
+				free(frame);
+				break;
+			}
+			mFramePool.put(frame);
+		}
+		if (UNLIKELY(mFramePool.isEmpty())) {
+			LOGE("no frame could be allocated");
+			RETURN(result, int);
+		}
+	}
+	for (int i = 0; i < FLIR_ONE_STAT_NUM; i++) {
+		__atomic_store_n(&mStats[i], 0, __ATOMIC_RELAXED);
+	}
+	reset_assembler();
+
+	setRunning(true);
+	mNumTransfers = 0;
+	mTransferSize = transfer_size;
+	mTransfers = new libusb_transfer *[num_transfers];
+	mActiveTransfers = 0;
+	mErrorRetries = 0;
+	for (int i = 0; i < num_transfers; i++) {
+		libusb_transfer *transfer = libusb_alloc_transfer(0);
+		uint8_t *buffer = LIKELY(transfer) ? (uint8_t *)malloc(transfer_size) : NULL;
+		if (UNLIKELY(!buffer)) {
+			LOGW("failed to allocate transfer %d", i);
+			if (transfer) {
+				libusb_free_transfer(transfer);
+			}
+			break;
+		}
+		libusb_fill_bulk_transfer(transfer, mDeviceHandle, FLIR_ONE_EP_VIDEO,
+			buffer, transfer_size, transfer_callback, this, 0);
+		mTransfers[i] = transfer;
+		mNumTransfers = i + 1;
+		if (LIKELY(!libusb_submit_transfer(transfer))) {
+			mActiveTransfers++;
+		} else {
+			LOGW("failed to submit transfer %d", i);
+		}
+	}
+	if (UNLIKELY(!mActiveTransfers)) {
+		LOGE("no transfer could be submitted");
+		setRunning(false);
+		stop();
+		RETURN(result, int);
+	}
+
+	result = pthread_create(&callback_thread, NULL, callback_thread_func, (void *)this);
+	if (LIKELY(!result)) {
+		result = pthread_create(&event_thread, NULL, event_thread_func, (void *)this);
+		if (LIKELY(!result)) {
+			mHasThreads = true;
+			RETURN(result, int);
+		}
+		LOGW("FlirOneStreamer::start event thread: pthread_create failed");
+		setRunning(false);
+		pthread_join(callback_thread, NULL);
+	} else {
+		LOGW("FlirOneStreamer::start callback thread: pthread_create failed");
+	}
+	setRunning(false);
+	stop();
+	RETURN(result, int);
+}
+
+int FlirOneStreamer::stop() {
+	ENTER();
+	setRunning(false);
+	if (mTransfers) {
+		pthread_mutex_lock(&transfer_mutex);
+		{
+			for (int i = 0; i < mNumTransfers; i++) {
+				libusb_cancel_transfer(mTransfers[i]);
+			}
+		}
+		pthread_mutex_unlock(&transfer_mutex);
+	}
+	if (mHasThreads) {
+		// event thread returns once every cancelled transfer was reaped
+		if (pthread_join(event_thread, NULL) != EXIT_SUCCESS) {
+			LOGW("FlirOneStreamer::terminate event thread: pthread_join failed");
+		}
+		if (pthread_join(callback_thread, NULL) != EXIT_SUCCESS) {
+			LOGW("FlirOneStreamer::terminate callback thread: pthread_join failed");
+		}
+		mHasThreads = false;
+	} else if (mTransfers) {
+		// start() failed before the event thread ran, reap the cancelled transfers
+		// here so that libusb is done with them before they are freed
+		struct timeval tv = { 0, EVENT_TIMEOUT_US };
+		for (; mActiveTransfers > 0 ;) {
+			libusb_handle_events_timeout_completed(mContext, &tv, NULL);
+		}
+	}
+	if (mTransfers) {
+		for (int i = 0; i < mNumTransfers; i++) {
+			free(mTransfers[i]->buffer);
+			libusb_free_transfer(mTransfers[i]);
+		}
+		SAFE_DELETE_ARRAY(mTransfers);
+		mNumTransfers = 0;
+	}
+	reset_assembler();
+	pthread_mutex_lock(&frame_mutex);
+	if (mReadyFrame) {
+		mFramePool.put(mReadyFrame);
+		mReadyFrame = NULL;
+	}
+	pthread_mutex_unlock(&frame_mutex);
+	RETURN(0, int);
+}
+
+/**
+ * delete the global reference of the callback object, must be called after stop()
+ */
+void FlirOneStreamer::releaseCallback(JNIEnv *env) {
+	if (mFrameCallbackObj) {
+		env->DeleteGlobalRef(mFrameCallbackObj);
+		mFrameCallbackObj = NULL;
+	}
+	iframecallback_fields.onFrame = NULL;
+}
+
+/**
+ * @param stats at least FLIR_ONE_STAT_NUM elements
+ */
+void FlirOneStreamer::getStatistics(uint64_t *stats) {
+	for (int i = 0; i < FLIR_ONE_STAT_NUM; i++) {
+		stats[i] = __atomic_load_n(&mStats[i], __ATOMIC_RELAXED);
+	}
+}
+
+//======================================================================
+/*
+ * libusb completion callback, runs on the event thread
+ */
+// static
+void LIBUSB_CALL FlirOneStreamer::transfer_callback(libusb_transfer *transfer) {
+	FlirOneStreamer *streamer = reinterpret_cast<FlirOneStreamer *>(transfer->user_data);
+	switch (transfer->status) {
+	case LIBUSB_TRANSFER_COMPLETED:
+		streamer->mErrorRetries = 0;
+		if (LIKELY(transfer->actual_length > 0 && streamer->isRunning())) {
+			streamer->count(FLIR_ONE_STAT_TRANSFERS);
+			__atomic_fetch_add(&streamer->mStats[FLIR_ONE_STAT_BYTES], transfer->actual_length, __ATOMIC_RELAXED);
+			streamer->mChunkTimestamp = elapsed_realtime_nanos();
+			streamer->feed(transfer->buffer, transfer->actual_length);
+		}
+		break;
+	case LIBUSB_TRANSFER_TIMED_OUT:
+		break;
+	case LIBUSB_TRANSFER_STALL:
+	case LIBUSB_TRANSFER_ERROR:
+		if (streamer->recover(transfer)) {
+			break;
+		}
+		// fall through
+	default:
+		// cancelled, the device is gone or too many errors in a row
+		MARK("transfer ended:status=%d", transfer->status);
+		pthread_mutex_lock(&streamer->transfer_mutex);
+		streamer->mActiveTransfers--;
+		pthread_mutex_unlock(&streamer->transfer_mutex);
+		return;
+	}
+	pthread_mutex_lock(&streamer->transfer_mutex);
+	if (streamer->isRunning() && !libusb_submit_transfer(transfer)) {
+		// keep it in flight
+	} else {
+		streamer->mActiveTransfers--;
+	}
+	pthread_mutex_unlock(&streamer->transfer_mutex);
+}
+
+/**
+ * a stall or a transient bus error ends only this transfer, clear the halt and let
+ * transfer_callback resubmit it, unless errors keep coming without any completed transfer
+ * @return false if the transfer should be retired
+ */
+bool FlirOneStreamer::recover(libusb_transfer *transfer) {
+	if (!isRunning() || (++mErrorRetries > FLIR_ONE_MAX_RETRIES)) {
+		LOGW("giving up transfer:status=%d, retries=%d", transfer->status, mErrorRetries);
+		return false;
+	}
+	if (transfer->status == LIBUSB_TRANSFER_STALL) {
+		// usbfs clears the halt with an ioctl, this does not re-enter event handling
+		const int r = libusb_clear_halt(mDeviceHandle, FLIR_ONE_EP_VIDEO);
+		if (UNLIKELY(r)) {
+			LOGW("libusb_clear_halt failed:err=%d", r);
+			return r != LIBUSB_ERROR_NO_DEVICE;
+		}
+	}
+	MARK("resubmit after status=%d, retries=%d", transfer->status, mErrorRetries);
+	return true;
+}
+
+// static
+void *FlirOneStreamer::event_thread_func(void *vptr_args) {
+	ENTER();
+	FlirOneStreamer *streamer = reinterpret_cast<FlirOneStreamer *>(vptr_args);
+	struct timeval tv = { 0, EVENT_TIMEOUT_US };
+	for (; streamer->mActiveTransfers > 0 ;) {
+		libusb_handle_events_timeout_completed(streamer->mContext, &tv, NULL);
+	}
+	// nothing left in flight, release the callback thread too
+	streamer->setRunning(false);
+	PRE_EXIT();
+	pthread_exit(NULL);
+}
+
+// static
+void *FlirOneStreamer::callback_thread_func(void *vptr_args) {
+	ENTER();
+	FlirOneStreamer *streamer = reinterpret_cast<FlirOneStreamer *>(vptr_args);
+	JavaVM *vm = getVM();
+	JNIEnv *env;
+	// attach to JavaVM
+	vm->AttachCurrentThread(&env, NULL);
+	streamer->do_callback(env);	// never return until finish streaming
+	// detach from JavaVM
+	vm->DetachCurrentThread();
+	MARK("DetachCurrentThread");
+	PRE_EXIT();
+	pthread_exit(NULL);
+}
+
+/**
+ * hand each frame to IFlirOneFrameCallback#onFrame as a direct ByteBuffer,
+ * one JNI call per frame
+ */
+void FlirOneStreamer::do_callback(JNIEnv *env) {
+	ENTER();
+	for (; isRunning() ;) {
+		flir_one_frame_t *frame = waitReadyFrame();
+		if (LIKELY(frame)) {
+			if (mFrameCallbackObj) {
+				jobject buf = env->NewDirectByteBuffer(frame->data, frame->frame_size);
+				env->CallVoidMethod(mFrameCallbackObj, iframecallback_fields.onFrame, buf,
+					(jint)frame->thermal_size, (jint)frame->jpg_size, (jint)frame->status_size,
+					(jlong)frame->sequence, (jlong)frame->timestamp_ns, (jint)frame->chunks);
+				env->ExceptionClear();
+				env->DeleteLocalRef(buf);
+			}
+			recycle_frame(frame);
+		}
+	}
+	EXIT();
+}
+
+void FlirOneStreamer::addReadyFrame(flir_one_frame_t *frame) {
+	pthread_mutex_lock(&frame_mutex);
+	if (mReadyFrame) {
+		// the callback is too slow, keep the latest frame only
+		mFramePool.put(mReadyFrame);
+		count(FLIR_ONE_STAT_DROPPED);
+		count(FLIR_ONE_STAT_OVERFLOWS);
+	}
+	mReadyFrame = frame;
+	pthread_cond_signal(&frame_sync);
+	pthread_mutex_unlock(&frame_mutex);
+}
+
+flir_one_frame_t *FlirOneStreamer::waitReadyFrame() {
+	flir_one_frame_t *frame = NULL;
+	pthread_mutex_lock(&frame_mutex);
+	{
+		if (!mReadyFrame && isRunning()) {
+			pthread_cond_wait(&frame_sync, &frame_mutex);
+		}
+		frame = mReadyFrame;
+		mReadyFrame = NULL;
+	}
+	pthread_mutex_unlock(&frame_mutex);
+	return frame;
+}
+
+//======================================================================
+// frame assembler, same state machine as FlirOneFrameAssembler on the Java side
+
+void FlirOneStreamer::reset_assembler() {
+	if (mCurrentFrame) {
+		recycle_frame(mCurrentFrame);
+		mCurrentFrame = NULL;
+	}
+	mState = STATE_SEARCH;
+	mMagicMatched = 0;
+	mHeaderPos = 0;
+	mPayloadPos = 0;
+}
+
+bool FlirOneStreamer::parse_sizes(const uint8_t *header, flir_one_frame_t *sizes) const {
+	const uint64_t frame = get_le32(header + 8);
+	const uint64_t thermal = get_le32(header + 12);
+	const uint64_t jpg = get_le32(header + 16);
+	const uint64_t status = get_le32(header + 20);
+	if ((frame > FLIR_ONE_MAX_FRAME_SIZE) || (thermal + jpg + status > frame)) {
+		return false;
+	}
+	if (sizes) {
+		sizes->frame_size = (uint32_t)frame;
+		sizes->thermal_size = (uint32_t)thermal;
+		sizes->jpg_size = (uint32_t)jpg;
+		sizes->status_size = (uint32_t)status;
+	}
+	return true;
+}
+
+void FlirOneStreamer::feed(const uint8_t *data, int length) {
+	// The camera starts every frame on a transfer boundary, a valid header while the previous
+	// frame is still short means a lost packet: restart on the new frame
+	if ((mState == STATE_PAYLOAD) && (length >= FLIR_ONE_HEADER_SIZE)
+		&& !memcmp(data, MAGIC_BYTES, sizeof(MAGIC_BYTES)) && parse_sizes(data, NULL)) {
+
+		count(FLIR_ONE_STAT_DROPPED);
+		count(FLIR_ONE_STAT_RESYNCS);
+		reset_assembler();
+	}
+	if (mState != STATE_SEARCH) {
+		mFrameChunks++;
+	}
+	parse(data, length);
+}
+
+void FlirOneStreamer::parse(const uint8_t *data, int length) {
+	const uint8_t *end = data + length;
+	while (data < end) {
+		switch (mState) {
+		case STATE_SEARCH:
+			for (; data < end ;) {
+				const uint8_t b = *data++;
+				if (b == MAGIC_BYTES[mMagicMatched]) {
+					if (++mMagicMatched == sizeof(MAGIC_BYTES)) {
+						mFrameTimestamp = mChunkTimestamp;
+						mFrameChunks = 1;
+						memcpy(mHeader, MAGIC_BYTES, sizeof(MAGIC_BYTES));
+						mHeaderPos = sizeof(MAGIC_BYTES);
+						mMagicMatched = 0;
+						mState = STATE_HEADER;
+						break;
+					}
+				} else {
+					mMagicMatched = (b == MAGIC_BYTES[0]) ? 1 : 0;
+				}
+			}
+			break;
+		case STATE_HEADER:
+		{
+			int n = FLIR_ONE_HEADER_SIZE - mHeaderPos;
+			if (n > end - data) n = end - data;
+			memcpy(mHeader + mHeaderPos, data, n);
+			mHeaderPos += n;
+			data += n;
+			if (mHeaderPos == FLIR_ONE_HEADER_SIZE) {
+				on_header_complete();
+			}
+			break;
+		}
+		case STATE_PAYLOAD:
+		{
+			uint32_t n = mSizes.frame_size - mPayloadPos;
+			if (n > (uint32_t)(end - data)) n = end - data;
+			if (mCurrentFrame) {
+				memcpy(mCurrentFrame->data + mPayloadPos, data, n);
+			}
+			mPayloadPos += n;
+			data += n;
+			if (mPayloadPos == mSizes.frame_size) {
+				complete_frame();
+			}
+			break;
+		}
+		}
+	}
+}
+
+void FlirOneStreamer::on_header_complete() {
+	if (parse_sizes(mHeader, &mSizes)) {
+		mPayloadPos = 0;
+		mState = STATE_PAYLOAD;
+		mSequence++;
+		mCurrentFrame = get_frame();
+		if (!mSizes.frame_size) {
+			complete_frame();
+		}
+	} else {
+		// false magic or corrupted header: rescan everything after the magic's first byte
+		uint8_t rescan[FLIR_ONE_HEADER_SIZE - 1];
+		count(FLIR_ONE_STAT_RESYNCS);
+		memcpy(rescan, mHeader + 1, sizeof(rescan));
+		reset_assembler();
+		parse(rescan, sizeof(rescan));
+	}
+}
+
+void FlirOneStreamer::complete_frame() {
+	flir_one_frame_t *frame = mCurrentFrame;
+	mCurrentFrame = NULL;
+	reset_assembler();
+	if (UNLIKELY(!frame)) {
+		// pool was exhausted
+		count(FLIR_ONE_STAT_DROPPED);
+		count(FLIR_ONE_STAT_OVERFLOWS);
+		return;
+	}
+	count(FLIR_ONE_STAT_FRAMES);
+	frame->frame_size = mSizes.frame_size;
+	frame->thermal_size = mSizes.thermal_size;
+	frame->jpg_size = mSizes.jpg_size;
+	frame->status_size = mSizes.status_size;
+	frame->sequence = mSequence;
+	frame->timestamp_ns = mFrameTimestamp;
+	frame->chunks = mFrameChunks;
+	addReadyFrame(frame);
+}
@@ -0,0 +1,141 @@
+/*
+ * UVCCamera
+ * library and sample to access to UVC web camera on non-rooted Android device
+ *
+ * Copyright (c) 2014-2017 saki t_saki@serenegiant.com
+ *
+ * File name: FlirOneStreamer.h
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ * All files in the folder are under this Apache License, Version 2.0.
+ * Files in the jni/libjpeg, jni/libusb, jin/libuvc, jni/rapidjson folder may have a different license, see the respective files.
+*/
+
+#ifndef FLIRONESTREAMER_H_
+#define FLIRONESTREAMER_H_
+
+#include "libUVCCamera.h"
+#include <pthread.h>
+#include "objectarray.h"
+
+#pragma interface
+
+#define FLIR_ONE_EP_VIDEO 0x85
+#define FLIR_ONE_VIDEO_INTERFACE 2
+#define FLIR_ONE_HEADER_SIZE 28
+#define FLIR_ONE_MAX_FRAME_SIZE (512 * 1024)
+#define FLIR_ONE_DEFAULT_TRANSFERS 8
+#define FLIR_ONE_DEFAULT_TRANSFER_SIZE 16384
+#define FLIR_ONE_MAX_TRANSFERS 32
+#define FLIR_ONE_MAX_RETRIES 32		// failed transfers resubmitted in a row before giving up
+
+// one assembled frame, payload = thermal + jpeg + status
+typedef struct flir_one_frame {
+	uint8_t *data;
+	uint32_t frame_size;
+	uint32_t thermal_size;
+	uint32_t jpg_size;
+	uint32_t status_size;
+	uint64_t sequence;		// header count, gaps are lost frames
+	int64_t timestamp_ns;	// CLOCK_BOOTTIME of the chunk the header started in
+	uint32_t chunks;		// transfers the frame was assembled from
+} flir_one_frame_t;
+
+// for callback to Java object
+typedef struct {
+	jmethodID onFrame;
+} Fields_iflironeframecallback;
+
+// statistics, in the order returned to Java
+enum {
+	FLIR_ONE_STAT_FRAMES = 0,
+	FLIR_ONE_STAT_DROPPED,
+	FLIR_ONE_STAT_RESYNCS,
+	FLIR_ONE_STAT_TRANSFERS,
+	FLIR_ONE_STAT_BYTES,
+	FLIR_ONE_STAT_OVERFLOWS,	// part of FLIR_ONE_STAT_DROPPED, no free frame or slow callback
+	FLIR_ONE_STAT_NUM
+};
+
+class FlirOneStreamer {
+private:
+	libusb_context *mContext;
+	libusb_device *mDevice;
+	libusb_device_handle *mDeviceHandle;
+	int mFd;
+	volatile bool mIsRunning;
+	bool mHasThreads;
+	// libusb transfers on EP 0x85
+	int mNumTransfers;
+	int mTransferSize;
+	libusb_transfer **mTransfers;
+	pthread_mutex_t transfer_mutex;
+	pthread_cond_t transfer_sync;
+	volatile int mActiveTransfers;
+	int mErrorRetries;		// failed transfers since the last completed one, event thread only
+	pthread_t event_thread;
+	// frame delivery
+	pthread_t callback_thread;
+	pthread_mutex_t frame_mutex;
+	pthread_cond_t frame_sync;
+	ObjectArray<flir_one_frame_t *> mFramePool;
+	flir_one_frame_t *mReadyFrame;		// keep latest frame
+	jobject mFrameCallbackObj;
+	Fields_iflironeframecallback iframecallback_fields;
+	// assembler state, only touched on the event thread
+	int mState;
+	int mMagicMatched;
+	uint8_t mHeader[FLIR_ONE_HEADER_SIZE];
+	int mHeaderPos;
+	uint32_t mPayloadPos;
+	flir_one_frame_t mSizes;
+	flir_one_frame_t *mCurrentFrame;
+	uint64_t mSequence;
+	int64_t mChunkTimestamp;
+	int64_t mFrameTimestamp;
+	uint32_t mFrameChunks;
+	uint64_t mStats[FLIR_ONE_STAT_NUM];	// 64 bit, only through __atomic on 32 bit ARM
+	inline void count(const int stat) { __atomic_fetch_add(&mStats[stat], 1, __ATOMIC_RELAXED); };
+//
+	flir_one_frame_t *get_frame();
+	void recycle_frame(flir_one_frame_t *frame);
+	void clear_pool();
+	static void LIBUSB_CALL transfer_callback(libusb_transfer *transfer);
+	bool recover(libusb_transfer *transfer);
+	static void *event_thread_func(void *vptr_args);
+	static void *callback_thread_func(void *vptr_args);
+	void do_callback(JNIEnv *env);
+	void feed(const uint8_t *data, int length);
+	void parse(const uint8_t *data, int length);
+	void on_header_complete();
+	void complete_frame();
+	void reset_assembler();
+	bool parse_sizes(const uint8_t *header, flir_one_frame_t *sizes) const;
+	void addReadyFrame(flir_one_frame_t *frame);
+	flir_one_frame_t *waitReadyFrame();
+	void setRunning(bool running);
+public:
+	FlirOneStreamer();
+	~FlirOneStreamer();
+
+	int connect(int vid, int pid, int fd, int busnum, int devaddr, const char *usbfs);
+	int release();
+	int start(JNIEnv *env, jobject frame_callback_obj, int num_transfers, int transfer_size);
+	int stop();
+	void releaseCallback(JNIEnv *env);
+	inline const bool isRunning() const { return mIsRunning; };
+	void getStatistics(uint64_t *stats);
+};
+
+#endif /* FLIRONESTREAMER_H_ */
@@ -0,0 +1,237 @@
+/*
+ * UVCCamera
+ * library and sample to access to UVC web camera on non-rooted Android device
+ *
+ * Copyright (c) 2014-2017 saki t_saki@serenegiant.com
+ *
+ * File name: ThermalColorizer.cpp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ * All files in the folder are under this Apache License, Version 2.0.
+ * Files in the jni/libjpeg, jni/libusb, jin/libuvc, jni/rapidjson folder may have a different license, see the respective files.
+*/
+
+#include <stdlib.h>
+#include <string.h>
+#include <math.h>
+
+#if 1	// set 1 if you don't need debug log
+	#ifndef LOG_NDEBUG
+		#define	LOG_NDEBUG		// w/o LOGV/LOGD/MARK
+	#endif
+	#undef USE_LOGALL
+#else
+	#define USE_LOGALL
+	#undef LOG_NDEBUG
+//	#undef NDEBUG
+#endif
+
+#include "utilbase.h"
+#include "ThermalColorizer.h"
+
+static inline uint32_t pack_rgbx(int r, int g, int b) {
+	// RGBA_8888 is R, G, B, A in memory, i.e. ABGR as a little endian word
+	return 0xff000000 | ((uint32_t)b << 16) | ((uint32_t)g << 8) | (uint32_t)r;
+}
+
+static inline int clamp255(int v) {
+	return v < 0 ? 0 : (v > 255 ? 255 : v);
+}
+
+ThermalColorizer::ThermalColorizer()
+:	mPalette(THERMAL_PALETTE_IRON),
+	mAgcMode(THERMAL_AGC_LINEAR),
+	mHistogram(NULL),
+	mFused(NULL) {
+
+	ENTER();
+	init_palettes();
+	EXIT();
+}
+
+ThermalColorizer::~ThermalColorizer() {
+	ENTER();
+	free(mHistogram);
+	free(mFused);
+	EXIT();
+}
+
+/**
+ * build the palettes once, same colors as the Java side renderer
+ */
+void ThermalColorizer::init_palettes() {
+	for (int i = 0; i < THERMAL_PALETTE_SIZE; i++) {
+		// iron, cold = black/blue, hot = red/yellow
+		int r, g, b;
+		if (i < 85) {
+			r = 0; g = 0; b = i * 3;
+		} else if (i < 170) {
+			r = (i - 85) * 3; g = 0; b = 255 - (i - 85) * 3;
+		} else {
+			r = 255; g = (i - 170) * 3; b = 0;
+		}
+		mPalettes[THERMAL_PALETTE_IRON][i] = pack_rgbx(clamp255(r), clamp255(g), clamp255(b));
+
+		// rainbow, hue 0 to 300 degrees at full saturation and value
+		const float h = (i / 255.0f) * 300.0f / 60.0f;
+		const int sector = (int)floorf(h) % 6;
+		const int f = (int)((h - floorf(h)) * 255.0f + 0.5f);
+		const int q = 255 - f;
+		switch (sector) {
+		case 0: r = 255; g = f; b = 0; break;
+		case 1: r = q; g = 255; b = 0; break;
+		case 2: r = 0; g = 255; b = f; break;
+		case 3: r = 0; g = q; b = 255; break;
+		case 4: r = f; g = 0; b = 255; break;
+		default: r = 255; g = 0; b = q; break;
+		}
+		mPalettes[THERMAL_PALETTE_RAINBOW][i] = pack_rgbx(r, g, b);
+
+		mPalettes[THERMAL_PALETTE_GRAY][i] = pack_rgbx(i, i, i);
+	}
+}
+
+int ThermalColorizer::setPalette(int palette) {
+	ENTER();
+	if (UNLIKELY((palette < 0) || (palette >= THERMAL_PALETTE_NUM))) {
+		RETURN(EXIT_FAILURE, int);
+	}
+	mPalette = palette;
+	RETURN(0, int);
+}
+
+/**
+ * @param agc_mode THERMAL_AGC_LINEAR or THERMAL_AGC_PLATEAU, takes effect with the next frame
+ */
+int ThermalColorizer::setAgcMode(int agc_mode) {
+	ENTER();
+	if (UNLIKELY((agc_mode != THERMAL_AGC_LINEAR) && (agc_mode != THERMAL_AGC_PLATEAU))) {
+		RETURN(EXIT_FAILURE, int);
+	}
+	mAgcMode = agc_mode;
+	RETURN(0, int);
+}
+
+/**
+ * plateau histogram equalization like ThermalFrameProcessor#AGC_PLATEAU: every bin is clipped
+ * at the plateau and the clipped histogram between the rejected tails is integrated into mFused
+ * @return 0 on success, -1 if the tables could not be allocated
+ */
+int ThermalColorizer::colorize_plateau(const uint16_t *src, const int pixels, const uint32_t *palette) {
+	if (UNLIKELY(!mHistogram)) {
+		// calloc, cleared again after every frame
+		mHistogram = (uint32_t *)calloc(THERMAL_Y16_RANGE, sizeof(uint32_t));
+		mFused = (uint32_t *)malloc(THERMAL_Y16_RANGE * sizeof(uint32_t));
+		if (UNLIKELY(!mHistogram || !mFused)) {
+			LOGW("failed to allocate plateau tables");
+			SAFE_FREE(mHistogram);
+			SAFE_FREE(mFused);
+			return -1;
+		}
+	}
+	uint32_t *hist = mHistogram;
+	uint32_t min_value = 0xffff, max_value = 0;
+	for (int i = 0; i < pixels; i++) {
+		const uint32_t v = src[i];
+		hist[v]++;
+		if (v < min_value) min_value = v;
+		if (v > max_value) max_value = v;
+	}
+	// tail rejection
+	const uint32_t tail = (uint32_t)pixels * THERMAL_TAIL_PER_MILLE / 1000;
+	uint32_t lo = min_value, below = hist[lo];
+	while ((below <= tail) && (lo < max_value)) {
+		below += hist[++lo];
+	}
+	uint32_t hi = max_value, above = hist[hi];
+	while ((above <= tail) && (hi > lo)) {
+		above += hist[--hi];
+	}
+	// clip and integrate, each bin takes the palette index at the middle of its share
+	uint32_t clip = (uint32_t)pixels * THERMAL_PLATEAU_PER_MILLE / 1000;
+	if (clip < 1) clip = 1;
+	uint64_t total = 0;
+	for (uint32_t v = lo; v <= hi; v++) {
+		total += hist[v] < clip ? hist[v] : clip;
+	}
+	uint32_t *fused = mFused;
+	for (uint32_t v = min_value; v < lo; v++) {
+		fused[v] = palette[0];
+	}
+	if (LIKELY(total)) {
+		uint64_t cumulative = 0;
+		for (uint32_t v = lo; v <= hi; v++) {
+			const uint32_t count = hist[v] < clip ? hist[v] : clip;
+			fused[v] = palette[((2 * cumulative + count) * (THERMAL_PALETTE_SIZE - 1)) / (2 * total)];
+			cumulative += count;
+		}
+	}
+	for (uint32_t v = hi + 1; v <= max_value; v++) {
+		fused[v] = palette[THERMAL_PALETTE_SIZE - 1];
+	}
+	memset(hist + min_value, 0, (max_value - min_value + 1) * sizeof(uint32_t));
+	return 0;
+}
+
+/**
+ * colorize a Y16 frame into the locked window buffer, clipped to the smaller of both
+ * @return 0 on success
+ */
+int ThermalColorizer::colorize(const uvc_frame_t *frame, ANativeWindow_Buffer *buffer) {
+	const int width = frame->width;
+	const int height = frame->height;
+	const int pixels = width * height;
+	if (UNLIKELY(frame->actual_bytes < (size_t)pixels * 2)) {
+		return -1;
+	}
+	const uint16_t *src = (const uint16_t *)frame->data;
+	const uint32_t *palette = mPalettes[mPalette];
+	const int w = width < buffer->width ? width : buffer->width;
+	const int h = height < buffer->height ? height : buffer->height;
+	uint32_t *dest = (uint32_t *)buffer->bits;
+
+	if ((mAgcMode == THERMAL_AGC_PLATEAU) && LIKELY(!colorize_plateau(src, pixels, palette))) {
+		// only raw values between min and max of this frame are set in mFused
+		const uint32_t *fused = mFused;
+		for (int y = 0; y < h; y++) {
+			const uint16_t *s = src + y * width;
+			uint32_t *d = dest + y * buffer->stride;
+			for (int x = 0; x < w; x++) {
+				d[x] = fused[s[x]];
+			}
+		}
+		return 0;
+	}
+
+	// first pass: scene range for the AGC
+	uint32_t min_value = 0xffff, max_value = 0;
+	for (int i = 0; i < pixels; i++) {
+		const uint32_t v = src[i];
+		if (v < min_value) min_value = v;
+		if (v > max_value) max_value = v;
+	}
+	const uint32_t range = max_value > min_value ? max_value - min_value : 1;
+	// 16.16 fixed point rounded up so max maps to 255, (v - min) <= range keeps it below 256 << 16
+	const uint32_t scale = ((255u << 16) + range - 1) / range;
+
+	// second pass: straight into the window, no intermediate frame
+	for (int y = 0; y < h; y++) {
+		const uint16_t *s = src + y * width;
+		uint32_t *d = dest + y * buffer->stride;
+		for (int x = 0; x < w; x++) {
+			d[x] = palette[((s[x] - min_value) * scale) >> 16];
+		}
+	}
+	return 0;
+}
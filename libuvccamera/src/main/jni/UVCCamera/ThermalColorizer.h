@@ -0,0 +1,73 @@
+/*
+ * UVCCamera
+ * library and sample to access to UVC web camera on non-rooted Android device
+ *
+ * Copyright (c) 2014-2017 saki t_saki@serenegiant.com
+ *
+ * File name: ThermalColorizer.h
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ * All files in the folder are under this Apache License, Version 2.0.
+ * Files in the jni/libjpeg, jni/libusb, jin/libuvc, jni/rapidjson folder may have a different license, see the respective files.
+*/
+
+#ifndef THERMALCOLORIZER_H_
+#define THERMALCOLORIZER_H_
+
+#include "libUVCCamera.h"
+#include <android/native_window.h>
+
+#pragma interface
+
+// same values as UVCCamera#THERMAL_PALETTE_XXX
+#define THERMAL_PALETTE_IRON 0
+#define THERMAL_PALETTE_RAINBOW 1
+#define THERMAL_PALETTE_GRAY 2
+#define THERMAL_PALETTE_NUM 3
+
+#define THERMAL_PALETTE_SIZE 256
+
+// same values as UVCCamera#THERMAL_AGC_XXX and ThermalFrameProcessor#AGC_XXX
+#define THERMAL_AGC_LINEAR 0
+#define THERMAL_AGC_PLATEAU 1
+// same defaults as ThermalFrameProcessor
+#define THERMAL_PLATEAU_PER_MILLE 10		// clip limit of a histogram bin
+#define THERMAL_TAIL_PER_MILLE 5		// pixels ignored at each end of the histogram
+#define THERMAL_Y16_RANGE 0x10000
+
+/**
+ * Turns Y16 frames into RGBX with a min/max or plateau equalization AGC and a palette lookup,
+ * writing straight into a locked ANativeWindow buffer.
+ */
+class ThermalColorizer {
+private:
+	uint32_t mPalettes[THERMAL_PALETTE_NUM][THERMAL_PALETTE_SIZE];	// RGBA_8888 in memory order
+	volatile int mPalette;
+	volatile int mAgcMode;
+	// plateau equalization, allocated on the preview thread when first used
+	uint32_t *mHistogram;
+	uint32_t *mFused;		// raw value to RGBX, rebuilt every frame
+	void init_palettes();
+	int colorize_plateau(const uint16_t *src, const int pixels, const uint32_t *palette);
+public:
+	ThermalColorizer();
+	~ThermalColorizer();
+	int setPalette(int palette);
+	inline int getPalette() const { return mPalette; };
+	int setAgcMode(int agc_mode);
+	inline int getAgcMode() const { return mAgcMode; };
+	int colorize(const uvc_frame_t *frame, ANativeWindow_Buffer *buffer);
+};
+
+#endif /* THERMALCOLORIZER_H_ */
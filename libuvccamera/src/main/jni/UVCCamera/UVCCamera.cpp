@@ -264,11 +264,68 @@ int UVCCamera::setPreviewDisplay(ANativeWindow *preview_window) {
 	RETURN(result, int);
 }
 
-int UVCCamera::setFrameCallback(JNIEnv *env, jobject frame_callback_obj, int pixel_format) {
+int UVCCamera::setFrameCallback(JNIEnv *env, jobject frame_callback_obj, int pixel_format, bool leased) {
 	ENTER();
 	int result = EXIT_FAILURE;
 	if (mPreview) {
-		result = mPreview->setFrameCallback(env, frame_callback_obj, pixel_format);
+		result = mPreview->setFrameCallback(env, frame_callback_obj, pixel_format, leased);
+	}
+	RETURN(result, int);
+}
+
+/**
+ * return a frame handed out by ILeasedFrameCallback
+ */
+int UVCCamera::releaseFrame(uvc_frame_t *frame) {
+	int result = EXIT_FAILURE;
+	if (mPreview) {
+		result = mPreview->releaseLeasedFrame(frame);
+	}
+	return result;
+}
+
+/**
+ * palette for Y16 frames drawn to the preview window
+ */
+int UVCCamera::setThermalPalette(int palette) {
+	ENTER();
+	int result = EXIT_FAILURE;
+	if (mPreview) {
+		result = mPreview->setThermalPalette(palette);
+	}
+	RETURN(result, int);
+}
+
+/**
+ * AGC for Y16 frames drawn to the preview window
+ */
+int UVCCamera::setThermalAgcMode(int agc_mode) {
+	ENTER();
+	int result = EXIT_FAILURE;
+	if (mPreview) {
+		result = mPreview->setThermalAgcMode(agc_mode);
+	}
+	RETURN(result, int);
+}
+
+int UVCCamera::setFrameBuffering(int preview_queue_size, int capture_queue_size, int pool_size) {
+	ENTER();
+	int result = EXIT_FAILURE;
+	if (mPreview) {
+		result = mPreview->setFrameBuffering(preview_queue_size, capture_queue_size, pool_size);
+	}
+	RETURN(result, int);
+}
+
+/**
+ * @param stats at least PREVIEW_STAT_NUM elements
+ */
+int UVCCamera::getPreviewStatistics(uint64_t *stats) {
+	ENTER();
+	int result = EXIT_FAILURE;
+	if (mPreview) {
+		mPreview->getStatistics(stats);
+		result = EXIT_SUCCESS;
 	}
 	RETURN(result, int);
 }
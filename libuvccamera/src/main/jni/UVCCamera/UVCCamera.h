@@ -190,7 +190,12 @@ public:
 	char *getSupportedSize();
 	int setPreviewSize(int width, int height, int min_fps, int max_fps, int mode, float bandwidth = DEFAULT_BANDWIDTH);
 	int setPreviewDisplay(ANativeWindow *preview_window);
-	int setFrameCallback(JNIEnv *env, jobject frame_callback_obj, int pixel_format);
+	int setFrameCallback(JNIEnv *env, jobject frame_callback_obj, int pixel_format, bool leased = false);
+	int releaseFrame(uvc_frame_t *frame);
+	int setThermalPalette(int palette);
+	int setThermalAgcMode(int agc_mode);
+	int setFrameBuffering(int preview_queue_size, int capture_queue_size, int pool_size);
+	int getPreviewStatistics(uint64_t *stats);
 	int startPreview();
 	int stopPreview();
 	int setCaptureDisplay(ANativeWindow *capture_window);
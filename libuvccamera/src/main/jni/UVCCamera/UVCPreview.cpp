@@ -23,6 +23,8 @@
 */
 
 #include <stdlib.h>
+#include <string.h>
+#include <errno.h>
 #include <linux/time.h>
 #include <unistd.h>
 
@@ -42,9 +44,8 @@
 #include "libuvc_internal.h"
 
 #define	LOCAL_DEBUG 0
-#define MAX_FRAME 4
 #define PREVIEW_PIXEL_BYTES 4	// RGBA/RGBX
-#define FRAME_POOL_SZ MAX_FRAME + 2
+#define MAX_LEASED_FRAMES 4		// frames ILeasedFrameCallback may hold at once, newer ones are dropped
 
 UVCPreview::UVCPreview(uvc_device_handle_t *devh)
 :	mPreviewWindow(NULL),
@@ -64,15 +65,21 @@ UVCPreview::UVCPreview(uvc_device_handle_t *devh)
 	previewFormat(WINDOW_FORMAT_RGBA_8888),
 	mIsRunning(false),
 	mIsCapturing(false),
-	captureQueu(NULL),
 	mFrameCallbackObj(NULL),
 	mFrameCallbackFunc(NULL),
-	callbackPixelBytes(2) {
+	callbackPixelBytes(2),
+	mFrameCallbackLeased(false),
+	mPreviewQueue(DEFAULT_PREVIEW_QUEUE_SIZE),
+	mCaptureQueue(DEFAULT_CAPTURE_QUEUE_SIZE),
+	mFramePool(DEFAULT_FRAME_POOL_SIZE),
+	mFramePoolSize(DEFAULT_FRAME_POOL_SIZE) {
 
 	ENTER();
-	pthread_cond_init(&preview_sync, NULL);
+	memset(mStats, 0, sizeof(mStats));
+	sem_init(&preview_sem, 0, 0);
 	pthread_mutex_init(&preview_mutex, NULL);
 //
+	sem_init(&capture_sem, 0, 0);
 	pthread_cond_init(&capture_sync, NULL);
 	pthread_mutex_init(&capture_mutex, NULL);
 //	
@@ -91,11 +98,13 @@ UVCPreview::~UVCPreview() {
 	mCaptureWindow = NULL;
 	clearPreviewFrame();
 	clearCaptureFrame();
+	clear_leased_frames();
 	clear_pool();
 	pthread_mutex_destroy(&preview_mutex);
-	pthread_cond_destroy(&preview_sync);
+	sem_destroy(&preview_sem);
 	pthread_mutex_destroy(&capture_mutex);
 	pthread_cond_destroy(&capture_sync);
+	sem_destroy(&capture_sem);
 	pthread_mutex_destroy(&pool_mutex);
 	EXIT();
 }
@@ -107,29 +116,21 @@ UVCPreview::~UVCPreview() {
  * and you may need to confirm the size
  */
 uvc_frame_t *UVCPreview::get_frame(size_t data_bytes) {
-	uvc_frame_t *frame = NULL;
-	pthread_mutex_lock(&pool_mutex);
-	{
-		if (!mFramePool.isEmpty()) {
-			frame = mFramePool.last();
-		}
-	}
-	pthread_mutex_unlock(&pool_mutex);
+	uvc_frame_t *frame = mFramePool.pop();
 	if UNLIKELY(!frame) {
 		LOGW("allocate new frame");
+		count(PREVIEW_STAT_POOL_MISSES);
 		frame = uvc_allocate_frame(data_bytes);
 	}
 	return frame;
 }
 
+/**
+ * return the frame to the pool, any thread
+ */
 void UVCPreview::recycle_frame(uvc_frame_t *frame) {
-	pthread_mutex_lock(&pool_mutex);
-	if (LIKELY(mFramePool.size() < FRAME_POOL_SZ)) {
-		mFramePool.put(frame);
-		frame = NULL;
-	}
-	pthread_mutex_unlock(&pool_mutex);
-	if (UNLIKELY(frame)) {
+	if (UNLIKELY(!mFramePool.push(frame))) {
+		count(PREVIEW_STAT_POOL_OVERFLOWS);
 		uvc_free_frame(frame);
 	}
 }
@@ -139,13 +140,9 @@ void UVCPreview::init_pool(size_t data_bytes) {
 	ENTER();
 
 	clear_pool();
-	pthread_mutex_lock(&pool_mutex);
-	{
-		for (int i = 0; i < FRAME_POOL_SZ; i++) {
-			mFramePool.put(uvc_allocate_frame(data_bytes));
-		}
+	for (int i = 0; i < mFramePoolSize; i++) {
+		recycle_frame(uvc_allocate_frame(data_bytes));
 	}
-	pthread_mutex_unlock(&pool_mutex);
 
 	EXIT();
 }
@@ -153,20 +150,91 @@ void UVCPreview::init_pool(size_t data_bytes) {
 void UVCPreview::clear_pool() {
 	ENTER();
 
+	uvc_frame_t *frame;
+	while ((frame = mFramePool.pop())) {
+		uvc_free_frame(frame);
+	}
+	EXIT();
+}
+
+/**
+ * keep the frame for ILeasedFrameCallback until Java side returns it
+ * @return false if Java side already holds MAX_LEASED_FRAMES frames
+ */
+bool UVCPreview::lease_frame(uvc_frame_t *frame) {
+	bool result = false;
+	pthread_mutex_lock(&pool_mutex);
+	{
+		if (mLeasedFrames.size() < MAX_LEASED_FRAMES) {
+			mLeasedFrames.put(frame);
+			result = true;
+		}
+	}
+	pthread_mutex_unlock(&pool_mutex);
+	return result;
+}
+
+/**
+ * return the leased frame to the pool, any thread
+ * unknown or already returned frames are ignored
+ */
+int UVCPreview::releaseLeasedFrame(uvc_frame_t *frame) {
+	int index;
+	pthread_mutex_lock(&pool_mutex);
+	{
+		index = mLeasedFrames.getIndex(frame);
+		if (LIKELY(index >= 0)) {
+			mLeasedFrames.remove(index);
+			recycle_frame(frame);	// under pool_mutex, setFrameBuffering may resize the pool
+		}
+	}
+	pthread_mutex_unlock(&pool_mutex);
+	if (UNLIKELY(index < 0)) {
+		LOGW("releaseLeasedFrame:unknown frame %p", frame);
+		return EXIT_FAILURE;
+	}
+	return EXIT_SUCCESS;
+}
+
+/**
+ * free frames Java side never returned, their ByteBuffers must not be used anymore
+ */
+void UVCPreview::clear_leased_frames() {
 	pthread_mutex_lock(&pool_mutex);
 	{
-		const int n = mFramePool.size();
+		const int n = mLeasedFrames.size();
 		for (int i = 0; i < n; i++) {
-			uvc_free_frame(mFramePool[i]);
+			uvc_free_frame(mLeasedFrames[i]);
 		}
-		mFramePool.clear();
+		mLeasedFrames.clear();
 	}
 	pthread_mutex_unlock(&pool_mutex);
-	EXIT();
 }
 
 inline const bool UVCPreview::isRunning() const {return mIsRunning; }
 
+static enum uvc_frame_format frame_mode_to_format(const int mode) {
+	switch (mode) {
+	case FRAME_MODE_MJPEG:
+		return UVC_FRAME_FORMAT_MJPEG;
+	case FRAME_MODE_Y16:
+		return UVC_FRAME_FORMAT_GRAY16;
+	default:
+		return UVC_FRAME_FORMAT_YUYV;
+	}
+}
+
+static const char *frame_mode_name(const int mode) {
+	switch (mode) {
+	case FRAME_MODE_MJPEG:
+		return "MJPEG";
+	case FRAME_MODE_Y16:
+		return "Y16";
+	default:
+		return "YUYV";
+	}
+}
+
 int UVCPreview::setPreviewSize(int width, int height, int min_fps, int max_fps, int mode, float bandwidth) {
 	ENTER();
 	
@@ -181,13 +249,50 @@ int UVCPreview::setPreviewSize(int width, int height, int min_fps, int max_fps,
 
 		uvc_stream_ctrl_t ctrl;
 		result = uvc_get_stream_ctrl_format_size_fps(mDeviceHandle, &ctrl,
-			!requestMode ? UVC_FRAME_FORMAT_YUYV : UVC_FRAME_FORMAT_MJPEG,
+			frame_mode_to_format(requestMode),
 			requestWidth, requestHeight, requestMinFps, requestMaxFps);
 	}
 	
 	RETURN(result, int);
 }
 
+/**
+ * set queue and pool sizes, only while the preview is stopped
+ * each size is rounded up to a power of two
+ */
+int UVCPreview::setFrameBuffering(int preview_queue_size, int capture_queue_size, int pool_size) {
+	ENTER();
+
+	if (UNLIKELY(isRunning() || (preview_queue_size < 1) || (capture_queue_size < 1) || (pool_size < 1))) {
+		RETURN(EXIT_FAILURE, int);
+	}
+	clearPreviewFrame();
+	clearCaptureFrame();
+	mPreviewQueue.resize(preview_queue_size);
+	mCaptureQueue.resize(capture_queue_size);
+	// leased frames may still come back from Java while the pool is resized
+	pthread_mutex_lock(&pool_mutex);
+	{
+		clear_pool();
+		mFramePool.resize(pool_size);
+		mFramePoolSize = pool_size;
+	}
+	pthread_mutex_unlock(&pool_mutex);
+	LOGI("frame buffering:preview=%d,capture=%d,pool=%d",
+		mPreviewQueue.capacity(), mCaptureQueue.capacity(), mFramePool.capacity());
+
+	RETURN(EXIT_SUCCESS, int);
+}
+
+/**
+ * @param stats at least PREVIEW_STAT_NUM elements
+ */
+void UVCPreview::getStatistics(uint64_t *stats) {
+	for (int i = 0; i < PREVIEW_STAT_NUM; i++) {
+		stats[i] = __atomic_load_n(&mStats[i], __ATOMIC_RELAXED);
+	}
+}
+
 int UVCPreview::setPreviewDisplay(ANativeWindow *preview_window) {
 	ENTER();
 	pthread_mutex_lock(&preview_mutex);
@@ -206,7 +311,7 @@ int UVCPreview::setPreviewDisplay(ANativeWindow *preview_window) {
 	RETURN(0, int);
 }
 
-int UVCPreview::setFrameCallback(JNIEnv *env, jobject frame_callback_obj, int pixel_format) {
+int UVCPreview::setFrameCallback(JNIEnv *env, jobject frame_callback_obj, int pixel_format, bool leased) {
 	
 	ENTER();
 	pthread_mutex_lock(&capture_mutex);
@@ -214,12 +319,13 @@ int UVCPreview::setFrameCallback(JNIEnv *env, jobject frame_callback_obj, int pi
 		if (isRunning() && isCapturing()) {
 			mIsCapturing = false;
 			if (mFrameCallbackObj) {
-				pthread_cond_signal(&capture_sync);
+				sem_post(&capture_sem);	// wake capture thread if it waits for a frame
 				pthread_cond_wait(&capture_sync, &capture_mutex);	// wait finishing capturing
 			}
 		}
-		if (!env->IsSameObject(mFrameCallbackObj, frame_callback_obj))	{
+		if (!env->IsSameObject(mFrameCallbackObj, frame_callback_obj) || (mFrameCallbackLeased != leased))	{
 			iframecallback_fields.onFrame = NULL;
+			mFrameCallbackLeased = leased;
 			if (mFrameCallbackObj) {
 				env->DeleteGlobalRef(mFrameCallbackObj);
 			}
@@ -229,13 +335,13 @@ int UVCPreview::setFrameCallback(JNIEnv *env, jobject frame_callback_obj, int pi
 				jclass clazz = env->GetObjectClass(frame_callback_obj);
 				if (LIKELY(clazz)) {
 					iframecallback_fields.onFrame = env->GetMethodID(clazz,
-						"onFrame",	"(Ljava/nio/ByteBuffer;)V");
+						"onFrame",	leased ? "(Ljava/nio/ByteBuffer;J)V" : "(Ljava/nio/ByteBuffer;)V");
 				} else {
 					LOGW("failed to get object class");
 				}
 				env->ExceptionClear();
 				if (!iframecallback_fields.onFrame) {
-					LOGE("Can't find IFrameCallback#onFrame");
+					LOGE("Can't find %s#onFrame", leased ? "ILeasedFrameCallback" : "IFrameCallback");
 					env->DeleteGlobalRef(frame_callback_obj);
 					mFrameCallbackObj = frame_callback_obj = NULL;
 				}
@@ -282,6 +388,16 @@ void UVCPreview::callbackPixelFormatChanged() {
 		mFrameCallbackFunc = uvc_yuyv2yuv420SP;
 		callbackPixelBytes = (sz * 3) / 2;
 		break;
+	  case PIXEL_FORMAT_Y16:
+		LOGI("PIXEL_FORMAT_Y16:");
+		callbackPixelBytes = sz * 2;
+		break;
+	}
+	if ((requestMode == FRAME_MODE_Y16) && mFrameCallbackFunc) {
+		// there is no color conversion from 16-bit luminance, hand the raw frame over instead
+		LOGW("pixel format %d is not available with Y16 frames, using PIXEL_FORMAT_Y16", mPixelFormat);
+		mFrameCallbackFunc = NULL;
+		callbackPixelBytes = sz * 2;
 	}
 }
 
@@ -341,11 +457,6 @@ int UVCPreview::startPreview() {
 		if (UNLIKELY(result != EXIT_SUCCESS)) {
 			LOGW("UVCCamera::window does not exist/already running/could not create thread etc.");
 			mIsRunning = false;
-			pthread_mutex_lock(&preview_mutex);
-			{
-				pthread_cond_signal(&preview_sync);
-			}
-			pthread_mutex_unlock(&preview_mutex);
 		}
 	}
 	RETURN(result, int);
@@ -356,8 +467,8 @@ int UVCPreview::stopPreview() {
 	bool b = isRunning();
 	if (LIKELY(b)) {
 		mIsRunning = false;
-		pthread_cond_signal(&preview_sync);
-		pthread_cond_signal(&capture_sync);
+		sem_post(&preview_sem);
+		sem_post(&capture_sem);
 		if (pthread_join(capture_thread, NULL) != EXIT_SUCCESS) {
 			LOGW("UVCPreview::terminate capture thread: pthread_join failed");
 		}
@@ -368,6 +479,9 @@ int UVCPreview::stopPreview() {
 	}
 	clearPreviewFrame();
 	clearCaptureFrame();
+	// no thread is left, forget wakeups nobody consumed
+	while (!sem_trywait(&preview_sem)) {}
+	while (!sem_trywait(&capture_sem)) {}
 	pthread_mutex_lock(&preview_mutex);
 	if (mPreviewWindow) {
 		ANativeWindow_release(mPreviewWindow);
@@ -389,6 +503,7 @@ int UVCPreview::stopPreview() {
 void UVCPreview::uvc_preview_frame_callback(uvc_frame_t *frame, void *vptr_args) {
 	UVCPreview *preview = reinterpret_cast<UVCPreview *>(vptr_args);
 	if UNLIKELY(!preview->isRunning() || !frame || !frame->frame_format || !frame->data || !frame->data_bytes) return;
+	preview->count(PREVIEW_STAT_FRAMES);
 	if (UNLIKELY(
 		((frame->frame_format != UVC_FRAME_FORMAT_MJPEG) && (frame->actual_bytes < preview->frameBytes))
 		|| (frame->width != preview->frameWidth) || (frame->height != preview->frameHeight) )) {
@@ -417,43 +532,50 @@ void UVCPreview::uvc_preview_frame_callback(uvc_frame_t *frame, void *vptr_args)
 	}
 }
 
+/**
+ * libuvc callback thread only, the producer side of mPreviewQueue
+ */
 void UVCPreview::addPreviewFrame(uvc_frame_t *frame) {
-
-	pthread_mutex_lock(&preview_mutex);
-	if (isRunning() && (previewFrames.size() < MAX_FRAME)) {
-		previewFrames.put(frame);
-		frame = NULL;
-		pthread_cond_signal(&preview_sync);
-	}
-	pthread_mutex_unlock(&preview_mutex);
-	if (frame) {
-		recycle_frame(frame);
+	if (LIKELY(isRunning())) {
+		if (LIKELY(mPreviewQueue.push(frame))) {
+			sem_post(&preview_sem);
+			return;
+		}
+		count(PREVIEW_STAT_PREVIEW_DROPS);
 	}
+	recycle_frame(frame);
+}
+
+/**
+ * wait for one semaphore count, returns without waiting if posted already
+ */
+static inline void wait_sem(sem_t *sem) {
+	while (sem_wait(sem) && (errno == EINTR)) {}
 }
 
+/**
+ * preview thread only, the consumer side of mPreviewQueue
+ * @return NULL on stop or a wakeup without frame
+ */
 uvc_frame_t *UVCPreview::waitPreviewFrame() {
-	uvc_frame_t *frame = NULL;
-	pthread_mutex_lock(&preview_mutex);
-	{
-		if (!previewFrames.size()) {
-			pthread_cond_wait(&preview_sync, &preview_mutex);
-		}
-		if (LIKELY(isRunning() && previewFrames.size() > 0)) {
-			frame = previewFrames.remove(0);
-		}
+	wait_sem(&preview_sem);
+	uvc_frame_t *frame = mPreviewQueue.pop();
+	if (UNLIKELY(frame && !isRunning())) {
+		recycle_frame(frame);
+		frame = NULL;
 	}
-	pthread_mutex_unlock(&preview_mutex);
 	return frame;
 }
 
+/**
+ * consumer side of mPreviewQueue only, or while no preview thread is running
+ */
 void UVCPreview::clearPreviewFrame() {
-	pthread_mutex_lock(&preview_mutex);
-	{
-		for (int i = 0; i < previewFrames.size(); i++)
-			recycle_frame(previewFrames[i]);
-		previewFrames.clear();
+	uvc_frame_t *frame;
+	while ((frame = mPreviewQueue.pop())) {
+		sem_trywait(&preview_sem);
+		recycle_frame(frame);
 	}
-	pthread_mutex_unlock(&preview_mutex);
 }
 
 void *UVCPreview::preview_thread_func(void *vptr_args) {
@@ -477,7 +599,7 @@ int UVCPreview::prepare_preview(uvc_stream_ctrl_t *ctrl) {
 
 	ENTER();
 	result = uvc_get_stream_ctrl_format_size_fps(mDeviceHandle, ctrl,
-		!requestMode ? UVC_FRAME_FORMAT_YUYV : UVC_FRAME_FORMAT_MJPEG,
+		frame_mode_to_format(requestMode),
 		requestWidth, requestHeight, requestMinFps, requestMaxFps
 	);
 	if (LIKELY(!result)) {
@@ -489,7 +611,7 @@ int UVCPreview::prepare_preview(uvc_stream_ctrl_t *ctrl) {
 		if (LIKELY(!result)) {
 			frameWidth = frame_desc->wWidth;
 			frameHeight = frame_desc->wHeight;
-			LOGI("frameSize=(%d,%d)@%s", frameWidth, frameHeight, (!requestMode ? "YUYV" : "MJPEG"));
+			LOGI("frameSize=(%d,%d)@%s", frameWidth, frameHeight, frame_mode_name(requestMode));
 			pthread_mutex_lock(&preview_mutex);
 			if (LIKELY(mPreviewWindow)) {
 				ANativeWindow_setBuffersGeometry(mPreviewWindow,
@@ -501,7 +623,7 @@ int UVCPreview::prepare_preview(uvc_stream_ctrl_t *ctrl) {
 			frameHeight = requestHeight;
 		}
 		frameMode = requestMode;
-		frameBytes = frameWidth * frameHeight * (!requestMode ? 2 : 4);
+		frameBytes = frameWidth * frameHeight * (requestMode != FRAME_MODE_MJPEG ? 2 : 4);
 		previewBytes = frameWidth * frameHeight * PREVIEW_PIXEL_BYTES;
 	} else {
 		LOGE("could not negotiate with camera:err=%d", result);
@@ -524,7 +646,7 @@ void UVCPreview::do_preview(uvc_stream_ctrl_t *ctrl) {
 #if LOCAL_DEBUG
 		LOGI("Streaming...");
 #endif
-		if (frameMode) {
+		if (frameMode == FRAME_MODE_MJPEG) {
 			// MJPEG mode
 			for ( ; LIKELY(isRunning()) ; ) {
 				frame_mjpeg = waitPreviewFrame();
@@ -540,6 +662,15 @@ void UVCPreview::do_preview(uvc_stream_ctrl_t *ctrl) {
 					}
 				}
 			}
+		} else if (frameMode == FRAME_MODE_Y16) {
+			// Y16 mode, AGC and palette straight into the preview window, frames go to the callback untouched
+			for ( ; LIKELY(isRunning()) ; ) {
+				frame = waitPreviewFrame();
+				if (LIKELY(frame)) {
+					frame = draw_preview_y16(frame);
+					addCaptureFrame(frame);
+				}
+			}
 		} else {
 			// yuvyv mode
 			for ( ; LIKELY(isRunning()) ; ) {
@@ -550,7 +681,7 @@ void UVCPreview::do_preview(uvc_stream_ctrl_t *ctrl) {
 				}
 			}
 		}
-		pthread_cond_signal(&capture_sync);
+		sem_post(&capture_sem);
 #if LOCAL_DEBUG
 		LOGI("preview_thread_func:wait for all callbacks complete");
 #endif
@@ -657,6 +788,25 @@ uvc_frame_t *UVCPreview::draw_preview_one(uvc_frame_t *frame, ANativeWindow **wi
 	return frame; //RETURN(frame, uvc_frame_t *);
 }
 
+/**
+ * colorize a Y16 frame into the preview window without any intermediate frame
+ * @return the original frame
+ */
+uvc_frame_t *UVCPreview::draw_preview_y16(uvc_frame_t *frame) {
+	pthread_mutex_lock(&preview_mutex);
+	if (LIKELY(mPreviewWindow)) {
+		ANativeWindow_Buffer buffer;
+		if (LIKELY(ANativeWindow_lock(mPreviewWindow, &buffer, NULL) == 0)) {
+			if (UNLIKELY(mColorizer.colorize(frame, &buffer))) {
+				LOGW("broken Y16 frame");
+			}
+			ANativeWindow_unlockAndPost(mPreviewWindow);
+		}
+	}
+	pthread_mutex_unlock(&preview_mutex);
+	return frame;
+}
+
 //======================================================================
 //
 //======================================================================
@@ -669,7 +819,7 @@ int UVCPreview::setCaptureDisplay(ANativeWindow *capture_window) {
 		if (isRunning() && isCapturing()) {
 			mIsCapturing = false;
 			if (mCaptureWindow) {
-				pthread_cond_signal(&capture_sync);
+				sem_post(&capture_sem);	// wake capture thread if it waits for a frame
 				pthread_cond_wait(&capture_sync, &capture_mutex);	// wait finishing capturing
 			}
 		}
@@ -698,49 +848,55 @@ int UVCPreview::setCaptureDisplay(ANativeWindow *capture_window) {
 	RETURN(0, int);
 }
 
+/**
+ * preview thread only, the producer side of mCaptureQueue
+ */
 void UVCPreview::addCaptureFrame(uvc_frame_t *frame) {
-	pthread_mutex_lock(&capture_mutex);
 	if (LIKELY(isRunning())) {
-		// keep only latest one
-		if (captureQueu) {
-			recycle_frame(captureQueu);
+		if (LIKELY(mCaptureQueue.push(frame))) {
+			sem_post(&capture_sem);
+			return;
 		}
-		captureQueu = frame;
-		pthread_cond_broadcast(&capture_sync);
+		count(PREVIEW_STAT_CAPTURE_DROPS);
 	}
-	pthread_mutex_unlock(&capture_mutex);
+	recycle_frame(frame);
 }
 
 /**
  * get frame data for capturing, if not exist, block and wait
+ * capture thread only, the consumer side of mCaptureQueue
+ * @return the latest frame, older ones are recycled. NULL on stop or a wakeup without frame
  */
 uvc_frame_t *UVCPreview::waitCaptureFrame() {
-	uvc_frame_t *frame = NULL;
-	pthread_mutex_lock(&capture_mutex);
-	{
-		if (!captureQueu) {
-			pthread_cond_wait(&capture_sync, &capture_mutex);
+	wait_sem(&capture_sem);
+	uvc_frame_t *frame = mCaptureQueue.pop();
+	if (LIKELY(frame)) {
+		// keep only latest one
+		uvc_frame_t *newer;
+		while ((newer = mCaptureQueue.pop())) {
+			sem_trywait(&capture_sem);
+			count(PREVIEW_STAT_CAPTURE_DROPS);
+			recycle_frame(frame);
+			frame = newer;
 		}
-		if (LIKELY(isRunning() && captureQueu)) {
-			frame = captureQueu;
-			captureQueu = NULL;
+		if (UNLIKELY(!isRunning())) {
+			recycle_frame(frame);
+			frame = NULL;
 		}
 	}
-	pthread_mutex_unlock(&capture_mutex);
 	return frame;
 }
 
 /**
  * clear drame data for capturing
+ * consumer side of mCaptureQueue only, or while no capture thread is running
  */
 void UVCPreview::clearCaptureFrame() {
-	pthread_mutex_lock(&capture_mutex);
-	{
-		if (captureQueu)
-			recycle_frame(captureQueu);
-		captureQueu = NULL;
+	uvc_frame_t *frame;
+	while ((frame = mCaptureQueue.pop())) {
+		sem_trywait(&capture_sem);
+		recycle_frame(frame);
 	}
-	pthread_mutex_unlock(&capture_mutex);
 }
 
 //======================================================================
@@ -778,13 +934,18 @@ void UVCPreview::do_capture(JNIEnv *env) {
 	clearCaptureFrame();
 	callbackPixelFormatChanged();
 	for (; isRunning() ;) {
+		// waits here while setFrameCallback/setCaptureDisplay change the capture state
+		pthread_mutex_lock(&capture_mutex);
 		mIsCapturing = true;
+		pthread_mutex_unlock(&capture_mutex);
 		if (mCaptureWindow) {
 			do_capture_surface(env);
 		} else {
 			do_capture_idle_loop(env);
 		}
+		pthread_mutex_lock(&capture_mutex);
 		pthread_cond_broadcast(&capture_sync);
+		pthread_mutex_unlock(&capture_mutex);
 	}	// end of for (; isRunning() ;)
 	EXIT();
 }
@@ -812,8 +973,8 @@ void UVCPreview::do_capture_surface(JNIEnv *env) {
 	for (; isRunning() && isCapturing() ;) {
 		frame = waitCaptureFrame();
 		if (LIKELY(frame)) {
-			// frame data is always YUYV format.
-			if LIKELY(isCapturing()) {
+			// frame data is YUYV format unless streaming Y16, which can not be shown.
+			if (LIKELY(isCapturing() && (frameMode != FRAME_MODE_Y16))) {
 				if (UNLIKELY(!converted)) {
 					converted = get_frame(previewBytes);
 				}
@@ -864,6 +1025,19 @@ void UVCPreview::do_capture_callback(JNIEnv *env, uvc_frame_t *frame) {
 					goto SKIP;
 				}
 			}
+			if (mFrameCallbackLeased) {
+				// the frame stays with Java side until UVCCamera#releaseFrame
+				if (UNLIKELY(!lease_frame(callback_frame))) {
+					count(PREVIEW_STAT_LEASE_DROPS);
+					goto SKIP;
+				}
+				jobject buf = env->NewDirectByteBuffer(callback_frame->data, callbackPixelBytes);
+				env->CallVoidMethod(mFrameCallbackObj, iframecallback_fields.onFrame, buf,
+					(jlong)(intptr_t)callback_frame);
+				env->ExceptionClear();
+				env->DeleteLocalRef(buf);
+				EXIT();
+			}
 			jobject buf = env->NewDirectByteBuffer(callback_frame->data, callbackPixelBytes);
 			env->CallVoidMethod(mFrameCallbackObj, iframecallback_fields.onFrame, buf);
 			env->ExceptionClear();
@@ -27,8 +27,11 @@
 
 #include "libUVCCamera.h"
 #include <pthread.h>
+#include <semaphore.h>
 #include <android/native_window.h>
 #include "objectarray.h"
+#include "framering.h"
+#include "ThermalColorizer.h"
 
 #pragma interface
 
@@ -47,6 +50,27 @@ typedef uvc_error_t (*convFunc_t)(uvc_frame_t *in, uvc_frame_t *out);
 #define PIXEL_FORMAT_RGBX 3
 #define PIXEL_FORMAT_YUV20SP 4
 #define PIXEL_FORMAT_NV21 5		// YVU420SemiPlanar
+#define PIXEL_FORMAT_Y16 6		// 16-bit luminance as sent by the camera, no conversion
+
+// frame formats to negotiate, same values as UVCCamera#FRAME_FORMAT_XXX
+#define FRAME_MODE_YUYV 0
+#define FRAME_MODE_MJPEG 1
+#define FRAME_MODE_Y16 2
+
+#define DEFAULT_PREVIEW_QUEUE_SIZE 4
+#define DEFAULT_CAPTURE_QUEUE_SIZE 2	// capture thread only takes the latest frame
+#define DEFAULT_FRAME_POOL_SIZE 8
+
+// statistics indices, same order as UVCCamera#PREVIEW_STAT_XXX
+enum {
+	PREVIEW_STAT_FRAMES = 0,		// frames received from libuvc
+	PREVIEW_STAT_PREVIEW_DROPS,		// preview queue full
+	PREVIEW_STAT_CAPTURE_DROPS,		// capture queue full or superseded by a newer frame
+	PREVIEW_STAT_POOL_MISSES,		// frame pool empty, a new frame was allocated
+	PREVIEW_STAT_POOL_OVERFLOWS,	// frame pool full, the frame was freed
+	PREVIEW_STAT_LEASE_DROPS,		// ILeasedFrameCallback already held the maximum number of frames
+	PREVIEW_STAT_NUM
+};
 
 // for callback to Java object
 typedef struct {
@@ -65,9 +89,9 @@ private:
 	int frameMode;
 	size_t frameBytes;
 	pthread_t preview_thread;
-	pthread_mutex_t preview_mutex;
-	pthread_cond_t preview_sync;
-	ObjectArray<uvc_frame_t *> previewFrames;
+	pthread_mutex_t preview_mutex;		// guards mPreviewWindow
+	sem_t preview_sem;					// posted for every queued preview frame
+	SpscRing<uvc_frame_t *> mPreviewQueue;	// libuvc callback => preview thread
 	int previewFormat;
 	size_t previewBytes;
 //
@@ -76,15 +100,22 @@ private:
 	pthread_t capture_thread;
 	pthread_mutex_t capture_mutex;
 	pthread_cond_t capture_sync;
-	uvc_frame_t *captureQueu;			// keep latest frame
+	sem_t capture_sem;					// posted for every queued capture frame
+	SpscRing<uvc_frame_t *> mCaptureQueue;	// preview thread => capture thread
 	jobject mFrameCallbackObj;
 	convFunc_t mFrameCallbackFunc;
 	Fields_iframecallback iframecallback_fields;
 	int mPixelFormat;
 	size_t callbackPixelBytes;
+	bool mFrameCallbackLeased;			// ILeasedFrameCallback, frames come back via releaseLeasedFrame
+	ObjectArray<uvc_frame_t *> mLeasedFrames;	// guarded by pool_mutex
+	uint64_t mStats[PREVIEW_STAT_NUM];
+	ThermalColorizer mColorizer;		// draws Y16 frames to the preview window
 // improve performance by reducing memory allocation
-	pthread_mutex_t pool_mutex;
-	ObjectArray<uvc_frame_t *> mFramePool;
+	pthread_mutex_t pool_mutex;			// guards mLeasedFrames only, the pool itself is lock-free
+	MpmcRing<uvc_frame_t *> mFramePool;
+	int mFramePoolSize;
+	inline void count(const int stat) { __atomic_fetch_add(&mStats[stat], 1, __ATOMIC_RELAXED); };
 	uvc_frame_t *get_frame(size_t data_bytes);
 	void recycle_frame(uvc_frame_t *frame);
 	void init_pool(size_t data_bytes);
@@ -99,6 +130,7 @@ private:
 	int prepare_preview(uvc_stream_ctrl_t *ctrl);
 	void do_preview(uvc_stream_ctrl_t *ctrl);
 	uvc_frame_t *draw_preview_one(uvc_frame_t *frame, ANativeWindow **window, convFunc_t func, int pixelBytes);
+	uvc_frame_t *draw_preview_y16(uvc_frame_t *frame);
 //
 	void addCaptureFrame(uvc_frame_t *frame);
 	uvc_frame_t *waitCaptureFrame();
@@ -108,6 +140,8 @@ private:
 	void do_capture_surface(JNIEnv *env);
 	void do_capture_idle_loop(JNIEnv *env);
 	void do_capture_callback(JNIEnv *env, uvc_frame_t *frame);
+	bool lease_frame(uvc_frame_t *frame);
+	void clear_leased_frames();
 	void callbackPixelFormatChanged();
 public:
 	UVCPreview(uvc_device_handle_t *devh);
@@ -116,7 +150,12 @@ public:
 	inline const bool isRunning() const;
 	int setPreviewSize(int width, int height, int min_fps, int max_fps, int mode, float bandwidth = 1.0f);
 	int setPreviewDisplay(ANativeWindow *preview_window);
-	int setFrameCallback(JNIEnv *env, jobject frame_callback_obj, int pixel_format);
+	int setFrameCallback(JNIEnv *env, jobject frame_callback_obj, int pixel_format, bool leased = false);
+	int releaseLeasedFrame(uvc_frame_t *frame);
+	int setFrameBuffering(int preview_queue_size, int capture_queue_size, int pool_size);
+	void getStatistics(uint64_t *stats);
+	inline int setThermalPalette(int palette) { return mColorizer.setPalette(palette); };
+	inline int setThermalAgcMode(int agc_mode) { return mColorizer.setAgcMode(agc_mode); };
 	int startPreview();
 	int stopPreview();
 	inline const bool isCapturing() const;
@@ -0,0 +1,214 @@
+/*
+ * UVCCamera
+ * library and sample to access to UVC web camera on non-rooted Android device
+ *
+ * Copyright (c) 2014-2017 saki t_saki@serenegiant.com
+ *
+ * File name: framering.h
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ * All files in the folder are under this Apache License, Version 2.0.
+ * Files in the jni/libjpeg, jni/libusb, jin/libuvc, jni/rapidjson folder may have a different license, see the respective files.
+*/
+
+#ifndef FRAMERING_H_
+#define FRAMERING_H_
+
+#include <stdint.h>
+#include "utilbase.h"
+
+/**
+ * capacities are rounded up to a power of two, at least 2
+ */
+static inline uint32_t ring_capacity(int requested) {
+	uint32_t capacity = 2;
+	while ((int)capacity < requested) {
+		capacity <<= 1;
+	}
+	return capacity;
+}
+
+/**
+ * lock-free bounded queue for one producer thread and one consumer thread
+ * T must be a pointer type, NULL means empty
+ */
+template <class T>
+class SpscRing {
+private:
+	T *m_elements;
+	uint32_t m_mask;
+	uint32_t m_head;	// next element to pop, written by the consumer only
+	uint32_t m_tail;	// next element to push, written by the producer only
+	// force inhibiting copy/assignment
+	SpscRing(const SpscRing &src);
+	void operator =(const SpscRing &src);
+public:
+	SpscRing(int capacity = 4)
+		: m_elements(NULL),
+		  m_mask(0),
+		  m_head(0),
+		  m_tail(0) {
+		resize(capacity);
+	}
+
+	~SpscRing() { SAFE_DELETE_ARRAY(m_elements); }
+
+	/**
+	 * only while neither side is running, elements still queued are lost so pop them first
+	 */
+	void resize(int requested) {
+		const uint32_t capacity = ring_capacity(requested);
+		SAFE_DELETE_ARRAY(m_elements);
+		m_elements = new T[capacity];
+		m_mask = capacity - 1;
+		m_head = m_tail = 0;
+	}
+
+	inline int capacity() const { return m_mask + 1; }
+	/**
+	 * @return number of queued elements, exact only on the producer or consumer thread
+	 */
+	inline int size() const {
+		return (int)(__atomic_load_n(&m_tail, __ATOMIC_ACQUIRE) - __atomic_load_n(&m_head, __ATOMIC_ACQUIRE));
+	}
+
+	/**
+	 * producer thread only
+	 * @return false if full, the element is not queued then
+	 */
+	bool push(T object) {
+		const uint32_t tail = m_tail;
+		if (UNLIKELY(tail - __atomic_load_n(&m_head, __ATOMIC_ACQUIRE) > m_mask)) {
+			return false;
+		}
+		m_elements[tail & m_mask] = object;
+		__atomic_store_n(&m_tail, tail + 1, __ATOMIC_RELEASE);
+		return true;
+	}
+
+	/**
+	 * consumer thread only
+	 * @return NULL if empty
+	 */
+	T pop() {
+		const uint32_t head = m_head;
+		if (head == __atomic_load_n(&m_tail, __ATOMIC_ACQUIRE)) {
+			return NULL;
+		}
+		T object = m_elements[head & m_mask];
+		__atomic_store_n(&m_head, head + 1, __ATOMIC_RELEASE);
+		return object;
+	}
+};
+
+/**
+ * lock-free bounded queue for any number of producer and consumer threads,
+ * every cell carries a sequence number so a slot is never reused before its reader is done
+ * T must be a pointer type, NULL means empty
+ */
+template <class T>
+class MpmcRing {
+private:
+	typedef struct {
+		uint32_t sequence;
+		T object;
+	} cell_t;
+	cell_t *m_cells;
+	uint32_t m_mask;
+	uint32_t m_enqueue_pos;
+	uint32_t m_dequeue_pos;
+	// force inhibiting copy/assignment
+	MpmcRing(const MpmcRing &src);
+	void operator =(const MpmcRing &src);
+public:
+	MpmcRing(int capacity = 8)
+		: m_cells(NULL),
+		  m_mask(0),
+		  m_enqueue_pos(0),
+		  m_dequeue_pos(0) {
+		resize(capacity);
+	}
+
+	~MpmcRing() { SAFE_DELETE_ARRAY(m_cells); }
+
+	/**
+	 * only while no other thread uses the ring, elements still queued are lost so pop them first
+	 */
+	void resize(int requested) {
+		const uint32_t capacity = ring_capacity(requested);
+		SAFE_DELETE_ARRAY(m_cells);
+		m_cells = new cell_t[capacity];
+		for (uint32_t i = 0; i < capacity; i++) {
+			m_cells[i].sequence = i;
+			m_cells[i].object = NULL;
+		}
+		m_mask = capacity - 1;
+		m_enqueue_pos = m_dequeue_pos = 0;
+	}
+
+	inline int capacity() const { return m_mask + 1; }
+
+	/**
+	 * @return false if full, the element is not queued then
+	 */
+	bool push(T object) {
+		cell_t *cell;
+		uint32_t pos = __atomic_load_n(&m_enqueue_pos, __ATOMIC_RELAXED);
+		for ( ; ; ) {
+			cell = &m_cells[pos & m_mask];
+			const int32_t diff = (int32_t)(__atomic_load_n(&cell->sequence, __ATOMIC_ACQUIRE) - pos);
+			if (diff == 0) {
+				if (__atomic_compare_exchange_n(&m_enqueue_pos, &pos, pos + 1,
+					true, __ATOMIC_RELAXED, __ATOMIC_RELAXED)) {
+					break;
+				}
+				// pos was reloaded by the failed exchange
+			} else if (diff < 0) {
+				return false;
+			} else {
+				pos = __atomic_load_n(&m_enqueue_pos, __ATOMIC_RELAXED);
+			}
+		}
+		cell->object = object;
+		__atomic_store_n(&cell->sequence, pos + 1, __ATOMIC_RELEASE);
+		return true;
+	}
+
+	/**
+	 * @return NULL if empty
+	 */
+	T pop() {
+		cell_t *cell;
+		uint32_t pos = __atomic_load_n(&m_dequeue_pos, __ATOMIC_RELAXED);
+		for ( ; ; ) {
+			cell = &m_cells[pos & m_mask];
+			const int32_t diff = (int32_t)(__atomic_load_n(&cell->sequence, __ATOMIC_ACQUIRE) - (pos + 1));
+			if (diff == 0) {
+				if (__atomic_compare_exchange_n(&m_dequeue_pos, &pos, pos + 1,
+					true, __ATOMIC_RELAXED, __ATOMIC_RELAXED)) {
+					break;
+				}
+			} else if (diff < 0) {
+				return NULL;
+			} else {
+				pos = __atomic_load_n(&m_dequeue_pos, __ATOMIC_RELAXED);
+			}
+		}
+		T object = cell->object;
+		__atomic_store_n(&cell->sequence, pos + m_mask + 1, __ATOMIC_RELEASE);
+		return object;
+	}
+};
+
+#endif /* FRAMERING_H_ */
@@ -0,0 +1,171 @@
+/*
+ * UVCCamera
+ * library and sample to access to UVC web camera on non-rooted Android device
+ *
+ * Copyright (c) 2014-2017 saki t_saki@serenegiant.com
+ *
+ * File name: serenegiant_usb_FlirOneStreamer.cpp
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ * All files in the folder are under this Apache License, Version 2.0.
+ * Files in the jni/libjpeg, jni/libusb, jin/libuvc, jni/rapidjson folder may have a different license, see the respective files.
+*/
+
+#if 1	// set 1 if you don't need debug log
+	#ifndef LOG_NDEBUG
+		#define	LOG_NDEBUG		// w/o LOGV/LOGD/MARK
+	#endif
+	#undef USE_LOGALL
+#else
+	#define USE_LOGALL
+	#undef LOG_NDEBUG
+	#undef NDEBUG
+#endif
+
+#include <jni.h>
+
+#include "libUVCCamera.h"
+#include "FlirOneStreamer.h"
+
+extern jint registerNativeMethods(JNIEnv* env, const char *class_name, JNINativeMethod *methods, int num_methods);
+
+static ID_TYPE nativeCreate(JNIEnv *env, jobject thiz) {
+
+	ENTER();
+	FlirOneStreamer *streamer = new FlirOneStreamer();
+	RETURN(reinterpret_cast<ID_TYPE>(streamer), ID_TYPE);
+}
+
+static void nativeDestroy(JNIEnv *env, jobject thiz,
+	ID_TYPE id_streamer) {
+
+	ENTER();
+	FlirOneStreamer *streamer = reinterpret_cast<FlirOneStreamer *>(id_streamer);
+	if (LIKELY(streamer)) {
+		streamer->stop();
+		streamer->releaseCallback(env);
+		SAFE_DELETE(streamer);
+	}
+	EXIT();
+}
+
+static jint nativeConnect(JNIEnv *env, jobject thiz,
+	ID_TYPE id_streamer,
+	jint vid, jint pid, jint fd,
+	jint busNum, jint devAddr, jstring usbfs_str) {
+
+	ENTER();
+	int result = JNI_ERR;
+	FlirOneStreamer *streamer = reinterpret_cast<FlirOneStreamer *>(id_streamer);
+	const char *c_usbfs = env->GetStringUTFChars(usbfs_str, JNI_FALSE);
+	if (LIKELY(streamer && (fd > 0))) {
+		result = streamer->connect(vid, pid, fd, busNum, devAddr, c_usbfs);
+	}
+	env->ReleaseStringUTFChars(usbfs_str, c_usbfs);
+	RETURN(result, jint);
+}
+
+static jint nativeRelease(JNIEnv *env, jobject thiz,
+	ID_TYPE id_streamer) {
+
+	ENTER();
+	int result = JNI_ERR;
+	FlirOneStreamer *streamer = reinterpret_cast<FlirOneStreamer *>(id_streamer);
+	if (LIKELY(streamer)) {
+		result = streamer->release();
+		streamer->releaseCallback(env);
+	}
+	RETURN(result, jint);
+}
+
+static jint nativeStart(JNIEnv *env, jobject thiz,
+	ID_TYPE id_streamer, jobject jIFrameCallback, jint num_transfers, jint transfer_size) {
+
+	ENTER();
+	int result = JNI_ERR;
+	FlirOneStreamer *streamer = reinterpret_cast<FlirOneStreamer *>(id_streamer);
+	if (LIKELY(streamer)) {
+		result = streamer->start(env, jIFrameCallback, num_transfers, transfer_size);
+	}
+	RETURN(result, jint);
+}
+
+static jint nativeStop(JNIEnv *env, jobject thiz,
+	ID_TYPE id_streamer) {
+
+	ENTER();
+	int result = JNI_ERR;
+	FlirOneStreamer *streamer = reinterpret_cast<FlirOneStreamer *>(id_streamer);
+	if (LIKELY(streamer)) {
+		result = streamer->stop();
+		streamer->releaseCallback(env);
+	}
+	RETURN(result, jint);
+}
+
+static jboolean nativeIsRunning(JNIEnv *env, jobject thiz,
+	ID_TYPE id_streamer) {
+
+	jboolean result = JNI_FALSE;
+	FlirOneStreamer *streamer = reinterpret_cast<FlirOneStreamer *>(id_streamer);
+	if (LIKELY(streamer)) {
+		result = streamer->isRunning();
+	}
+	return result;
+}
+
+static jint nativeGetStatistics(JNIEnv *env, jobject thiz,
+	ID_TYPE id_streamer, jlongArray stats_array) {
+
+	ENTER();
+	int result = JNI_ERR;
+	FlirOneStreamer *streamer = reinterpret_cast<FlirOneStreamer *>(id_streamer);
+	if (LIKELY(streamer && stats_array)) {
+		uint64_t stats[FLIR_ONE_STAT_NUM];
+		jlong values[FLIR_ONE_STAT_NUM];
+		streamer->getStatistics(stats);
+		for (int i = 0; i < FLIR_ONE_STAT_NUM; i++) {
+			values[i] = (jlong)stats[i];
+		}
+		int n = env->GetArrayLength(stats_array);
+		if (n > FLIR_ONE_STAT_NUM) n = FLIR_ONE_STAT_NUM;
+		env->SetLongArrayRegion(stats_array, 0, n, values);
+		result = n;
+	}
+	RETURN(result, jint);
+}
+
+//**********************************************************************
+//
+//**********************************************************************
+static JNINativeMethod methods[] = {
+	{ "nativeCreate",					"()J", (void *) nativeCreate },
+	{ "nativeDestroy",					"(J)V", (void *) nativeDestroy },
+	{ "nativeConnect",					"(JIIIIILjava/lang/String;)I", (void *) nativeConnect },
+	{ "nativeRelease",					"(J)I", (void *) nativeRelease },
+	{ "nativeStart",					"(JLcom/serenegiant/usb/IFlirOneFrameCallback;II)I", (void *) nativeStart },
+	{ "nativeStop",						"(J)I", (void *) nativeStop },
+	{ "nativeIsRunning",				"(J)Z", (void *) nativeIsRunning },
+	{ "nativeGetStatistics",			"(J[J)I", (void *) nativeGetStatistics },
+};
+
+int register_flironestreamer(JNIEnv *env) {
+	LOGV("register_flironestreamer:");
+	if (registerNativeMethods(env,
+		"com/serenegiant/usb/FlirOneStreamer",
+		methods, NUM_ARRAY_ELEMENTS(methods)) < 0) {
+		return -1;
+	}
+    return 0;
+}
@@ -276,6 +276,88 @@ static jint nativeSetFrameCallback(JNIEnv *env, jobject thiz,
 	RETURN(result, jint);
 }
 
+static jint nativeSetLeasedFrameCallback(JNIEnv *env, jobject thiz,
+	ID_TYPE id_camera, jobject jILeasedFrameCallback, jint pixel_format) {
+
+	jint result = JNI_ERR;
+	ENTER();
+	UVCCamera *camera = reinterpret_cast<UVCCamera *>(id_camera);
+	if (LIKELY(camera)) {
+		jobject frame_callback_obj = env->NewGlobalRef(jILeasedFrameCallback);
+		result = camera->setFrameCallback(env, frame_callback_obj, pixel_format, true);
+	}
+	RETURN(result, jint);
+}
+
+static jint nativeReleaseFrame(JNIEnv *env, jobject thiz,
+	ID_TYPE id_camera, jlong handle) {
+
+	jint result = JNI_ERR;
+	UVCCamera *camera = reinterpret_cast<UVCCamera *>(id_camera);
+	if (LIKELY(camera && handle)) {
+		result = camera->releaseFrame(reinterpret_cast<uvc_frame_t *>((intptr_t)handle));
+	}
+	return result;
+}
+
+static jint nativeSetThermalPalette(JNIEnv *env, jobject thiz,
+	ID_TYPE id_camera, jint palette) {
+
+	jint result = JNI_ERR;
+	ENTER();
+	UVCCamera *camera = reinterpret_cast<UVCCamera *>(id_camera);
+	if (LIKELY(camera)) {
+		result = camera->setThermalPalette(palette);
+	}
+	RETURN(result, jint);
+}
+
+static jint nativeSetThermalAgcMode(JNIEnv *env, jobject thiz,
+	ID_TYPE id_camera, jint agc_mode) {
+
+	jint result = JNI_ERR;
+	ENTER();
+	UVCCamera *camera = reinterpret_cast<UVCCamera *>(id_camera);
+	if (LIKELY(camera)) {
+		result = camera->setThermalAgcMode(agc_mode);
+	}
+	RETURN(result, jint);
+}
+
+static jint nativeSetFrameBuffering(JNIEnv *env, jobject thiz,
+	ID_TYPE id_camera, jint preview_queue_size, jint capture_queue_size, jint pool_size) {
+
+	jint result = JNI_ERR;
+	ENTER();
+	UVCCamera *camera = reinterpret_cast<UVCCamera *>(id_camera);
+	if (LIKELY(camera)) {
+		result = camera->setFrameBuffering(preview_queue_size, capture_queue_size, pool_size);
+	}
+	RETURN(result, jint);
+}
+
+static jint nativeGetPreviewStatistics(JNIEnv *env, jobject thiz,
+	ID_TYPE id_camera, jlongArray stats_array) {
+
+	jint result = JNI_ERR;
+	ENTER();
+	UVCCamera *camera = reinterpret_cast<UVCCamera *>(id_camera);
+	if (LIKELY(camera && stats_array)) {
+		uint64_t stats[PREVIEW_STAT_NUM];
+		jlong values[PREVIEW_STAT_NUM];
+		if (LIKELY(!camera->getPreviewStatistics(stats))) {
+			for (int i = 0; i < PREVIEW_STAT_NUM; i++) {
+				values[i] = (jlong)stats[i];
+			}
+			int n = env->GetArrayLength(stats_array);
+			if (n > PREVIEW_STAT_NUM) n = PREVIEW_STAT_NUM;
+			env->SetLongArrayRegion(stats_array, 0, n, values);
+			result = n;
+		}
+	}
+	RETURN(result, jint);
+}
+
 static jint nativeSetCaptureDisplay(JNIEnv *env, jobject thiz,
 	ID_TYPE id_camera, jobject jSurface) {
 
@@ -2028,6 +2110,12 @@ static JNINativeMethod methods[] = {
 	{ "nativeStopPreview",				"(J)I", (void *) nativeStopPreview },
 	{ "nativeSetPreviewDisplay",		"(JLandroid/view/Surface;)I", (void *) nativeSetPreviewDisplay },
 	{ "nativeSetFrameCallback",			"(JLcom/serenegiant/usb/IFrameCallback;I)I", (void *) nativeSetFrameCallback },
+	{ "nativeSetLeasedFrameCallback",	"(JLcom/serenegiant/usb/ILeasedFrameCallback;I)I", (void *) nativeSetLeasedFrameCallback },
+	{ "nativeReleaseFrame",				"(JJ)I", (void *) nativeReleaseFrame },
+	{ "nativeSetThermalPalette",		"(JI)I", (void *) nativeSetThermalPalette },
+	{ "nativeSetThermalAgcMode",		"(JI)I", (void *) nativeSetThermalAgcMode },
+	{ "nativeSetFrameBuffering",		"(JIII)I", (void *) nativeSetFrameBuffering },
+	{ "nativeGetPreviewStatistics",		"(J[J)I", (void *) nativeGetPreviewStatistics },
 
 	{ "nativeSetCaptureDisplay",		"(JLandroid/view/Surface;)I", (void *) nativeSetCaptureDisplay },
 
@@ -107,6 +107,8 @@ enum uvc_frame_format {
 	UVC_FRAME_FORMAT_BY8,
 
 	UVC_FRAME_FORMAT_I420, // jimk
+	/** 16-bit luminance, e.g. radiometric thermal data */
+	UVC_FRAME_FORMAT_GRAY16,
 
 	/** Number of formats understood */
 	UVC_FRAME_FORMAT_COUNT,
@@ -100,7 +100,7 @@ struct format_table_entry *_get_format_entry(enum uvc_frame_format format) {
 		{UVC_FRAME_FORMAT_UNCOMPRESSED, UVC_FRAME_FORMAT_COMPRESSED})
 
 	ABS_FMT(UVC_FRAME_FORMAT_UNCOMPRESSED,
-		{UVC_FRAME_FORMAT_YUYV, UVC_FRAME_FORMAT_UYVY, UVC_FRAME_FORMAT_GRAY8})
+		{UVC_FRAME_FORMAT_YUYV, UVC_FRAME_FORMAT_UYVY, UVC_FRAME_FORMAT_GRAY8, UVC_FRAME_FORMAT_GRAY16})
 	FMT(UVC_FRAME_FORMAT_YUYV,
 		{'Y', 'U', 'Y', '2', 0x00, 0x00, 0x10, 0x00, 0x80, 0x00, 0x00, 0xaa, 0x00, 0x38, 0x9b, 0x71})
 	FMT(UVC_FRAME_FORMAT_UYVY,
@@ -109,6 +109,8 @@ struct format_table_entry *_get_format_entry(enum uvc_frame_format format) {
 		{'Y', '8', '0', '0', 0x00, 0x00, 0x10, 0x00, 0x80, 0x00, 0x00, 0xaa, 0x00, 0x38, 0x9b, 0x71})
     FMT(UVC_FRAME_FORMAT_BY8,
     	{'B', 'Y', '8', ' ', 0x00, 0x00, 0x10, 0x00, 0x80, 0x00, 0x00, 0xaa, 0x00, 0x38, 0x9b, 0x71})
+	FMT(UVC_FRAME_FORMAT_GRAY16,
+		{'Y', '1', '6', ' ', 0x00, 0x00, 0x10, 0x00, 0x80, 0x00, 0x00, 0xaa, 0x00, 0x38, 0x9b, 0x71})
 
 	ABS_FMT(UVC_FRAME_FORMAT_COMPRESSED,
 		{UVC_FRAME_FORMAT_MJPEG})
@@ -1703,6 +1705,7 @@ void _uvc_populate_frame(uvc_stream_handle_t *strmh) {
 
 	switch (frame->frame_format) {
 	case UVC_FRAME_FORMAT_YUYV:
+	case UVC_FRAME_FORMAT_GRAY16:
 		frame->step = frame->width * 2;
 		break;
 	case UVC_FRAME_FORMAT_MJPEG:
@@ -1,12 +1,22 @@
 package com.serenegiant.usbcameratest3;
 
+import android.content.SharedPreferences;
 import android.hardware.usb.UsbConstants;
 import android.hardware.usb.UsbDevice;
 import android.hardware.usb.UsbDeviceConnection;
 import android.hardware.usb.UsbEndpoint;
 import android.hardware.usb.UsbInterface;
+import android.hardware.usb.UsbRequest;
+import android.os.SystemClock;
 import android.util.Log;
 
+import com.serenegiant.thermal.FlirOneFrame;
+import com.serenegiant.thermal.FlirOneFrameAssembler;
+import com.serenegiant.thermal.FlirOneThermalUnpacker;
+import com.serenegiant.usb.FlirOneStreamer;
+import com.serenegiant.usb.IFlirOneFrameCallback;
+import com.serenegiant.usb.USBMonitor;
+
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
@@ -24,22 +34,69 @@ public class FlirOneDriver {
     private static final int EP_CONTROL_OUT = 0x02; // Control bulk OUT
     private static final int EP_STATUS = 0x83;      // Status bulk IN
 
-    // Magic bytes for frame start
-    private static final byte[] MAGIC_BYTES = {(byte)0xEF, (byte)0xBE, 0x00, 0x00};
-
-    // Frame buffer - smaller size for Glass compatibility
-    private static final int FRAME_BUFFER_SIZE = 512 * 1024; // 512KB buffer
-    private byte[] frameBuffer = new byte[FRAME_BUFFER_SIZE];
-    private int frameBufferPos = 0;
+    // Frame parser - preallocated 512KB payload buffer for Glass compatibility
+    private final FlirOneFrameAssembler assembler = new FlirOneFrameAssembler();
+
+    // Queued asynchronous reads on EP 0x85 - depth 0 keeps the synchronous bulkTransfer loop
+    private static final int DEFAULT_TRANSFER_SIZE = 4096; // multiple of 512, safe on Glass's kernel
+    private static final int MAX_ASYNC_QUEUE_DEPTH = 32;
+    private int asyncQueueDepth = 0;
+    private int transferSize = DEFAULT_TRANSFER_SIZE;
+    private UsbRequest[] activeRequests;
+    private FlirOneTransferProbe transferProbe;
+
+    // Optional libusb streamer on the connection's fd, replaces the Java read loop when set
+    private USBMonitor.UsbControlBlock nativeCtrlBlock;
+    private volatile FlirOneStreamer nativeStreamer;
+    private final long[] nativeStats = new long[FlirOneStreamer.STAT_NUM];     // running streamer
+    private final long[] nativeStatsBase = new long[FlirOneStreamer.STAT_NUM]; // streamers already stopped
+    private int nativeTransferCount = FlirOneStreamer.DEFAULT_TRANSFERS;
+    private int nativeTransferSize = FlirOneStreamer.DEFAULT_TRANSFER_SIZE;
+
+    // EP 0x81/0x83 keep-alive polling runs on its own thread, off the video read path
+    private FlirOneStatusPoller statusPoller;
+
+    // Status JSON from the frame's status block (stream thread) and from EP 0x81/0x83 (poller thread)
+    private final FlirOneStatusParser frameStatusParser = new FlirOneStatusParser();
+    private final FlirOneStatusParser endpointStatusParser = new FlirOneStatusParser();
+
+    // Restarts the interfaces when frames stop arriving, instead of giving up on the stream
+    private final FlirOneStreamWatchdog watchdog = new FlirOneStreamWatchdog(new FlirOneStreamWatchdog.Restarter() {
+        @Override
+        public boolean restartStream() {
+            return restartInterfaces();
+        }
+    });
+
+    // open() readiness polling, settle delays learned per device and kernel
+    private static final int INIT_POLL_MIN_MS = 5;
+    private static final int INIT_POLL_MAX_MS = 50;
+    private static final int INIT_STATUS_TIMEOUT_MS = 20;
+    // no INITIAL_STATUS, the status poller keeps reading EP 0x81 and its JSON must reach the parser
+    private static final FlirOneInitTimings.Phase[] RESTART_PHASES = {
+        FlirOneInitTimings.Phase.STOP_STREAMS,
+        FlirOneInitTimings.Phase.START_FILEIO,
+        FlirOneInitTimings.Phase.CAMERA_FILES,
+        FlirOneInitTimings.Phase.START_VIDEO,
+    };
+    // set once the native library or FlirOneStreamer's class failed to load, later starts skip it
+    private static volatile boolean nativeStreamerUnavailable = false;
+    private final FlirOneInitTimings initTimings = new FlirOneInitTimings();
+    private SharedPreferences timingPrefs;
 
     private UsbDevice device;
     private UsbDeviceConnection connection;
     private UsbInterface iface0, iface1, iface2;
+    private boolean claimed0, claimed1, claimed2;
     private UsbEndpoint epVideo, epControlIn, epControlOut, epStatus;
 
-    private boolean isStreaming = false;
-    private Thread streamThread;
-    private FrameCallback frameCallback;
+    private volatile boolean isStreaming = false;
+    private volatile Thread streamThread;
+    private volatile PooledFrameCallback pooledFrameCallback;
+
+    // Live counters next to the assembler's, written by the stream threads only
+    private volatile long timeoutCount = 0;
+    private volatile long nativeFramesOverflowed = 0; // natively assembled, but no pooled frame free
 
     public interface FrameCallback {
         void onThermalFrame(byte[] thermalData, int width, int height);
@@ -47,289 +104,604 @@ public class FlirOneDriver {
         void onError(String error);
     }
 
+    /**
+     * Zero-copy variant of FrameCallback: frames are handed out in their pooled assembly buffer.
+     * Every frame must be released, the assembler drops incoming frames while the pool is empty.
+     */
+    public interface PooledFrameCallback {
+        /**
+         * Called on the stream thread. Call {@link FlirOneFrame#release()} when done,
+         * possibly from another thread.
+         */
+        void onFrame(FlirOneFrame frame);
+        void onError(String error);
+    }
+
     public FlirOneDriver(UsbDevice device) {
         this.device = device;
     }
 
     /**
-     * Opens and initializes the FLIR ONE using the proven sequence from C code
+     * Supplies the store for learned init timings, keyed per device and kernel.
+     * Without it every open() starts from zero settle delays.
+     */
+    public void setInitTimingStore(SharedPreferences prefs) {
+        this.timingPrefs = prefs;
+    }
+
+    /**
+     * @return per-phase latencies of the last open()
+     */
+    public FlirOneInitTimings getInitTimings() {
+        return initTimings;
+    }
+
+    /**
+     * Opens and initializes the FLIR ONE using the proven sequence from C code.
+     * Each phase polls for readiness with short bounded waits instead of fixed sleeps.
      */
     public boolean open(UsbDeviceConnection connection) {
         this.connection = connection;
         Log.d(TAG, "Opening FLIR ONE...");
 
-        // Step 1: Claim interfaces 0, 1, 2 with delays (proven to work)
-        if (!claimInterfaces()) {
-            Log.e(TAG, "Failed to claim interfaces");
-            return false;
+        final String timingKey = FlirOneInitTimings.getKey(device.getVendorId(), device.getProductId());
+        if (timingPrefs != null) {
+            initTimings.load(timingPrefs, timingKey);
+        } else {
+            initTimings.reset();
         }
 
-        // Step 2: Find endpoints
-        if (!findEndpoints()) {
-            Log.e(TAG, "Failed to find endpoints");
-            return false;
+        for (FlirOneInitTimings.Phase phase : FlirOneInitTimings.Phase.values()) {
+            if (!runPhase(phase)) {
+                Log.e(TAG, "Init phase " + phase + " failed: " + initTimings);
+                if (timingPrefs != null) {
+                    // learned delays may be too short for this camera now, start over next time
+                    initTimings.reset();
+                    initTimings.save(timingPrefs, timingKey);
+                }
+                return false;
+            }
         }
 
-        // Step 3: Set alternate interfaces for streaming
-        if (!setAlternateInterfaces()) {
-            Log.e(TAG, "Failed to set alternate interfaces");
+        if (timingPrefs != null) {
+            initTimings.save(timingPrefs, timingKey);
+        }
+        Log.i(TAG, "FLIR ONE opened successfully: " + initTimings);
+        return true;
+    }
+
+    /**
+     * Waits the learned settle delay, then retries the phase with doubling waits
+     * until it succeeds or its timeout runs out.
+     * @return false only if a required phase timed out
+     */
+    private boolean runPhase(FlirOneInitTimings.Phase phase) {
+        final long start = SystemClock.elapsedRealtime();
+        final int settle = initTimings.getSettleMs(phase);
+        if (settle > 0 && !sleepMs(settle)) {
             return false;
         }
+        final long pollStart = SystemClock.elapsedRealtime();
+        final long deadline = pollStart + phase.timeoutMs;
+        int waitMs = INIT_POLL_MIN_MS;
+        int attemptCount = 0;
+        while (true) {
+            final long attemptStart = SystemClock.elapsedRealtime();
+            attemptCount++;
+            boolean ready;
+            try {
+                ready = attemptPhase(phase);
+            } catch (Exception e) {
+                Log.e(TAG, "Error in init phase " + phase, e);
+                ready = false;
+            }
+            final long now = SystemClock.elapsedRealtime();
+            if (ready) {
+                initTimings.record(phase, true, attemptCount, attemptStart - pollStart, now - start);
+                if (DEBUG) Log.d(TAG, phase + " ready after " + (now - start) + "ms, attempts=" + attemptCount);
+                return true;
+            }
+            if (now >= deadline) {
+                initTimings.record(phase, false, attemptCount, now - pollStart, now - start);
+                Log.w(TAG, phase + " not ready after " + (now - start) + "ms");
+                return !phase.required;
+            }
+            if (!sleepMs((int) Math.min(waitMs, deadline - now))) {
+                return false;
+            }
+            waitMs = Math.min(waitMs * 2, INIT_POLL_MAX_MS);
+        }
+    }
 
-        // Step 4: Initialize camera with sequential commands
-        if (!initializeCamera()) {
-            Log.e(TAG, "Failed to initialize camera");
+    private boolean attemptPhase(FlirOneInitTimings.Phase phase) {
+        switch (phase) {
+        case CLAIM_INTERFACES:
+            return claimInterfaces();
+        case FIND_ENDPOINTS:
+            return findEndpoints();
+        case SET_ALTERNATES:
+            return setAlternateInterfaces();
+        case STOP_STREAMS:
+            // Stop interface 2 FRAME, then interface 1 FILEIO
+            return setInterfaceStreaming(2, false) & setInterfaceStreaming(1, false);
+        case START_FILEIO:
+            return setInterfaceStreaming(1, true);
+        case CAMERA_FILES:
+            // REQUIRED by FLIR ONE protocol
+            return sendCameraFilesRequest();
+        case INITIAL_STATUS:
+            return readInitialStatus();
+        case START_VIDEO:
+            return setInterfaceStreaming(2, true);
+        default:
             return false;
         }
+    }
 
-        Log.i(TAG, "FLIR ONE opened successfully");
-        return true;
+    private static boolean sleepMs(int ms) {
+        try {
+            Thread.sleep(ms);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
+    /**
+     * Claims interfaces 0, 1, 2, keeping those already claimed by an earlier attempt.
+     */
     private boolean claimInterfaces() {
-        try {
+        if (iface0 == null) {
             iface0 = device.getInterface(0);
             iface1 = device.getInterface(1);
             iface2 = device.getInterface(2);
+        }
+        if (!claimed0) claimed0 = connection.claimInterface(iface0, true);
+        if (!claimed1) claimed1 = connection.claimInterface(iface1, true);
+        if (!claimed2) claimed2 = connection.claimInterface(iface2, true);
 
-            boolean claimed0 = false, claimed1 = false, claimed2 = false;
-
-            for (int i = 0; i < 3; i++) {
-                claimed0 = connection.claimInterface(iface0, true);
-                if (claimed0) break;
-                Thread.sleep(100);
-            }
-            Thread.sleep(100);
+        Log.d(TAG, "Interface claiming: 0=" + claimed0 + " 1=" + claimed1 + " 2=" + claimed2);
+        return claimed0 && claimed1 && claimed2;
+    }
 
-            for (int i = 0; i < 3; i++) {
-                claimed1 = connection.claimInterface(iface1, true);
-                if (claimed1) break;
-                Thread.sleep(100);
+    private boolean findEndpoints() {
+        // Search interfaces for the endpoints we need
+        for (int j = 0; j < 3; j++) {
+            UsbInterface iface = device.getInterface(j);
+            for (int k = 0; k < iface.getEndpointCount(); k++) {
+                UsbEndpoint ep = iface.getEndpoint(k);
+                int addr = ep.getAddress();
+
+                if (addr == EP_CONTROL_IN) epControlIn = ep;
+                else if (addr == EP_CONTROL_OUT) epControlOut = ep;
+                else if (addr == EP_STATUS) epStatus = ep;
+                else if (addr == EP_VIDEO) epVideo = ep;
             }
-            Thread.sleep(100);
+        }
 
-            for (int i = 0; i < 3; i++) {
-                claimed2 = connection.claimInterface(iface2, true);
-                if (claimed2) break;
-                Thread.sleep(100);
-            }
-            Thread.sleep(200);
+        if (epControlIn != null && epControlOut != null && epStatus != null && epVideo != null) {
+            Log.d(TAG, "Found all endpoints");
+            return true;
+        }
+        return false;
+    }
 
-            Log.d(TAG, "Interface claiming: 0=" + claimed0 + " 1=" + claimed1 + " 2=" + claimed2);
-            return claimed0 && claimed1 && claimed2;
+    private boolean setAlternateInterfaces() {
+        // Set interface 1 to alt 0
+        int result1 = connection.controlTransfer(
+            0x01, 0x0B, 0, 1, null, 0, 500
+        );
+        Log.d(TAG, "Interface 1 alt 0: " + (result1 >= 0 ? "SUCCESS" : "FAILED"));
+
+        // Set interface 2 to alt 0
+        int result2 = connection.controlTransfer(
+            0x01, 0x0B, 0, 2, null, 0, 500
+        );
+        Log.d(TAG, "Interface 2 alt 0: " + (result2 >= 0 ? "SUCCESS" : "FAILED"));
+
+        return result2 >= 0;
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error claiming interfaces", e);
-            return false;
-        }
+    /**
+     * Starts or stops the FILEIO (interface 1) or FRAME (interface 2) stream.
+     */
+    private boolean setInterfaceStreaming(int iface, boolean start) {
+        int result = connection.controlTransfer(
+            0x01,           // bmRequestType
+            0x0B,           // bRequest
+            start ? 1 : 0,  // wValue: start/stop
+            iface,          // wIndex: interface
+            null,           // no data
+            0,
+            500
+        );
+        Log.d(TAG, (start ? "Start" : "Stop") + " interface " + iface + ": " + result);
+        return result >= 0;
     }
 
-    private boolean findEndpoints() {
-        for (int i = 0; i < 5; i++) {
-            // Search interfaces for the endpoints we need
-            for (int j = 0; j < 3; j++) {
-                UsbInterface iface = device.getInterface(j);
-                for (int k = 0; k < iface.getEndpointCount(); k++) {
-                    UsbEndpoint ep = iface.getEndpoint(k);
-                    int addr = ep.getAddress();
-
-                    if (addr == EP_CONTROL_IN) epControlIn = ep;
-                    else if (addr == EP_CONTROL_OUT) epControlOut = ep;
-                    else if (addr == EP_STATUS) epStatus = ep;
-                    else if (addr == EP_VIDEO) epVideo = ep;
-                }
-            }
+    private boolean sendCameraFilesRequest() {
+        // These headers and JSON are from the proven ROS driver
+        // Header 1
+        byte[] header1 = hexStringToByteArray("cc0100000100000041000000F8B3F700");
+        int ret = connection.bulkTransfer(epControlOut, header1, header1.length, 500);
+        Log.d(TAG, "Header1 sent: " + ret + " bytes");
+        if (ret < 0) return false;
+
+        // JSON 1
+        String json1 = "{\"type\":\"openFile\",\"data\":{\"mode\":\"r\",\"path\":\"CameraFiles.zip\"}}";
+        byte[] json1Bytes = (json1 + "\0").getBytes();
+        ret = connection.bulkTransfer(epControlOut, json1Bytes, json1Bytes.length, 500);
+        Log.d(TAG, "JSON1 sent: " + ret + " bytes");
+        if (ret < 0) return false;
+
+        // Header 2
+        byte[] header2 = hexStringToByteArray("cc0100000100000033000000efdbc1c1");
+        ret = connection.bulkTransfer(epControlOut, header2, header2.length, 500);
+        Log.d(TAG, "Header2 sent: " + ret + " bytes");
+        if (ret < 0) return false;
+
+        // JSON 2
+        String json2 = "{\"type\":\"readFile\",\"data\":{\"streamIdentifier\":10}}";
+        byte[] json2Bytes = (json2 + "\0").getBytes();
+        ret = connection.bulkTransfer(epControlOut, json2Bytes, json2Bytes.length, 500);
+        Log.d(TAG, "JSON2 sent: " + ret + " bytes");
+        return ret >= 0;
+    }
 
-            if (epControlIn != null && epControlOut != null && epStatus != null && epVideo != null) {
-                Log.d(TAG, "Found all endpoints");
-                return true;
-            }
+    /**
+     * Waits for the camera's first response on EP 0x81, then clears what is queued behind it.
+     * @return true once a response was read
+     */
+    private boolean readInitialStatus() {
+        byte[] buffer = new byte[1024];
 
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                // Ignore
+        int len = connection.bulkTransfer(epControlIn, buffer, buffer.length, INIT_STATUS_TIMEOUT_MS);
+        final boolean responded = len > 0;
+        // Read status from EP 0x81 a few times to clear buffer
+        for (int i = 0; i < 5 && len > 0; i++) {
+            Log.d(TAG, "Status read " + (i+1) + ": " + len + " bytes");
+            // Check for JSON response
+            if (len > 16 && buffer[16] == '{') {
+                String json = new String(buffer, 16, Math.min(len - 16, 100));
+                Log.d(TAG, "JSON: " + json);
             }
+            len = connection.bulkTransfer(epControlIn, buffer, buffer.length, INIT_STATUS_TIMEOUT_MS);
         }
+        return responded;
+    }
 
-        Log.e(TAG, "Could not find all endpoints");
-        return false;
+    private byte[] hexStringToByteArray(String s) {
+        int len = s.length();
+        byte[] data = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4)
+                                 + Character.digit(s.charAt(i+1), 16));
+        }
+        return data;
     }
 
-    private boolean setAlternateInterfaces() {
-        try {
-            // Set interface 1 to alt 0
-            int result1 = connection.controlTransfer(
-                0x01, 0x0B, 0, 1, null, 0, 500
-            );
-            Log.d(TAG, "Interface 1 alt 0: " + (result1 >= 0 ? "SUCCESS" : "FAILED"));
-            Thread.sleep(100);
-
-            // Set interface 2 to alt 0
-            int result2 = connection.controlTransfer(
-                0x01, 0x0B, 0, 2, null, 0, 500
-            );
-            Log.d(TAG, "Interface 2 alt 0: " + (result2 >= 0 ? "SUCCESS" : "FAILED"));
-            Thread.sleep(200);
-
-            return result2 >= 0;
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error setting alternates", e);
-            return false;
+    /**
+     * Keeps several UsbRequests queued on EP 0x85 so the host controller always has a
+     * buffer to fill, instead of idling between synchronous reads.
+     * Must be called before startStream().
+     * @param queueDepth number of requests kept in flight, 0 to use synchronous reads
+     * @param bufferSize bytes per request, rounded down to a multiple of 512
+     */
+    public void setAsyncReadQueue(int queueDepth, int bufferSize) {
+        if (queueDepth < 0 || queueDepth > MAX_ASYNC_QUEUE_DEPTH) {
+            throw new IllegalArgumentException("queueDepth must be 0.." + MAX_ASYNC_QUEUE_DEPTH + ": " + queueDepth);
         }
+        if (bufferSize < 512) {
+            throw new IllegalArgumentException("bufferSize must be at least 512: " + bufferSize);
+        }
+        asyncQueueDepth = queueDepth;
+        transferSize = bufferSize & ~511;
     }
 
-    private boolean initializeCamera() {
-        try {
-            Log.d(TAG, "Initializing camera with full sequence...");
-
-            // Step 1: Stop interface 2 FRAME
-            int result = connection.controlTransfer(
-                0x01,  // bmRequestType
-                0x0B,  // bRequest
-                0,     // wValue: stop
-                2,     // wIndex: interface 2
-                null,  // no data
-                0,
-                500
-            );
-            Log.d(TAG, "Stop interface 2 FRAME: " + result);
-            Thread.sleep(50);
-
-            // Step 2: Stop interface 1 FILEIO
-            result = connection.controlTransfer(
-                0x01,  // bmRequestType
-                0x0B,  // bRequest
-                0,     // wValue: stop
-                1,     // wIndex: interface 1
-                null,
-                0,
-                500
-            );
-            Log.d(TAG, "Stop interface 1 FILEIO: " + result);
-            Thread.sleep(50);
-
-            // Step 3: Start interface 1 FILEIO
-            result = connection.controlTransfer(
-                0x01,  // bmRequestType
-                0x0B,  // bRequest
-                1,     // wValue: start
-                1,     // wIndex: interface 1
-                null,
-                0,
-                500
-            );
-            Log.d(TAG, "Start interface 1 FILEIO: " + result);
-            Thread.sleep(100);
-
-            // Step 4: Send CameraFiles.zip request (REQUIRED by FLIR ONE protocol)
-            sendCameraFilesRequest();
-            Thread.sleep(100);
-
-            // Step 5: Read initial status to clear buffers
-            readInitialStatus();
-            Thread.sleep(100);
-
-            // Step 6: Start video stream on interface 2
-            result = connection.controlTransfer(
-                0x01,  // bmRequestType
-                0x0B,  // bRequest
-                1,     // wValue: start
-                2,     // wIndex: interface 2
-                null,
-                0,
-                500
-            );
-            Log.d(TAG, "Start video stream: " + result);
-            Thread.sleep(200);
-
-            return result >= 0;
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error initializing camera", e);
-            return false;
+    /**
+     * Reads EP 0x85 with libusb async transfers and native frame assembly instead of the
+     * Java read loop, one JNI call per frame. Falls back to the Java loop if libusb can not
+     * open the device. Must be called before startStream().
+     * @param ctrlBlock control block of the connection passed to open(), null to disable
+     * @param transferCount libusb transfers kept in flight
+     * @param transferSize bytes per transfer, rounded down to a multiple of 512
+     */
+    public void setNativeStreaming(USBMonitor.UsbControlBlock ctrlBlock, int transferCount, int transferSize) {
+        if (transferCount < 1 || transferSize < 512) {
+            throw new IllegalArgumentException("invalid native transfers: " + transferCount + " x " + transferSize);
         }
+        nativeCtrlBlock = ctrlBlock;
+        nativeTransferCount = transferCount;
+        nativeTransferSize = transferSize & ~511;
     }
 
-    private void sendCameraFilesRequest() {
-        try {
-            // These headers and JSON are from the proven ROS driver
-            // Header 1
-            byte[] header1 = hexStringToByteArray("cc0100000100000041000000F8B3F700");
-            int ret = connection.bulkTransfer(epControlOut, header1, header1.length, 500);
-            Log.d(TAG, "Header1 sent: " + ret + " bytes");
+    public boolean isNativeStreaming() {
+        return nativeStreamer != null;
+    }
+
+    /**
+     * Lets startStream() pick the largest EP 0x85 read size this host accepts, probed once per
+     * device and kernel, instead of the fixed transfer size. Applies to both read paths.
+     * @param probe null to keep the configured size
+     */
+    public void setTransferSizeProbe(FlirOneTransferProbe probe) {
+        this.transferProbe = probe;
+    }
 
-            // JSON 1
-            String json1 = "{\"type\":\"openFile\",\"data\":{\"mode\":\"r\",\"path\":\"CameraFiles.zip\"}}";
-            byte[] json1Bytes = (json1 + "\0").getBytes();
-            ret = connection.bulkTransfer(epControlOut, json1Bytes, json1Bytes.length, 500);
-            Log.d(TAG, "JSON1 sent: " + ret + " bytes");
+    public int getAsyncQueueDepth() {
+        return asyncQueueDepth;
+    }
 
-            // Header 2
-            byte[] header2 = hexStringToByteArray("cc0100000100000033000000efdbc1c1");
-            ret = connection.bulkTransfer(epControlOut, header2, header2.length, 500);
-            Log.d(TAG, "Header2 sent: " + ret + " bytes");
+    public int getTransferSize() {
+        return transferSize;
+    }
 
-            // JSON 2
-            String json2 = "{\"type\":\"readFile\",\"data\":{\"streamIdentifier\":10}}";
-            byte[] json2Bytes = (json2 + "\0").getBytes();
-            ret = connection.bulkTransfer(epControlOut, json2Bytes, json2Bytes.length, 500);
-            Log.d(TAG, "JSON2 sent: " + ret + " bytes");
+    /**
+     * @return the EP 0x81/0x83 poller of the current stream, null before startStream()
+     */
+    public FlirOneStatusPoller getStatusPoller() {
+        return statusPoller;
+    }
+
+    /**
+     * Receives shutter, FFC and battery changes from both status sources, on the stream
+     * or the status poller thread. Must be called before startStream().
+     */
+    public void setStatusListener(FlirOneStatusParser.Listener listener) {
+        frameStatusParser.setListener(listener);
+        endpointStatusParser.setListener(listener);
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error sending CameraFiles request", e);
+    /**
+     * @return true while the camera runs a flat-field correction or has its shutter closed,
+     * as reported last by either status source. An end of FFC one source missed can not keep
+     * the image flagged as unstable once the other reports it.
+     */
+    public boolean isImageUnstable() {
+        final long frameReport = frameStatusParser.getLastStateReportNanos();
+        final long endpointReport = endpointStatusParser.getLastStateReportNanos();
+        if (endpointReport == 0 || (frameReport != 0 && frameReport - endpointReport >= 0)) {
+            return frameStatusParser.isImageUnstable();
         }
+        return endpointStatusParser.isImageUnstable();
     }
 
-    private void readInitialStatus() {
-        byte[] buffer = new byte[1024];
+    /**
+     * @return the stall watchdog, set its listener or timings before startStream()
+     */
+    public FlirOneStreamWatchdog getWatchdog() {
+        return watchdog;
+    }
 
-        // Read status from EP 0x81 a few times to clear buffer
-        for (int i = 0; i < 5; i++) {
-            int len = connection.bulkTransfer(epControlIn, buffer, buffer.length, 500);
-            if (len > 0) {
-                Log.d(TAG, "Status read " + (i+1) + ": " + len + " bytes");
-                // Check for JSON response
-                if (len > 16 && buffer[16] == '{') {
-                    String json = new String(buffer, 16, Math.min(len - 16, 100));
-                    Log.d(TAG, "JSON: " + json);
+    /**
+     * Re-runs the stop/start interface sequence on the current connection.
+     * A running read loop keeps its transfers queued, and the assembler resyncs on the next
+     * header. A read loop that already ended is started again, nothing else would read EP 0x85.
+     */
+    private boolean restartInterfaces() {
+        if (!isStreaming) {
+            return false;
+        }
+        for (FlirOneInitTimings.Phase phase : RESTART_PHASES) {
+            if (!isStreaming || !restartPhase(phase)) {
+                return false;
+            }
+        }
+        return restartReadLoop();
+    }
+
+    /**
+     * Starts the native streamer or a new stream thread again if it has ended while still
+     * streaming. A native streamer that can not be started again falls back to Java reads.
+     * @return false if there is no read path left
+     */
+    private synchronized boolean restartReadLoop() {
+        if (!isStreaming) {
+            return false;
+        }
+        if (nativeStreamer != null) {
+            synchronized (nativeStats) {
+                final FlirOneStreamer streamer = nativeStreamer;
+                if (streamer == null || streamer.isRunning()) {
+                    return streamer != null;
                 }
-            } else {
-                break;
+                // every transfer has ended, start() resets the native statistics
+                Log.w(TAG, "Native stream has ended, starting it again");
+                streamer.getStatistics(nativeStats);
+                streamer.stop();
+                for (int i = 0; i < nativeStats.length; i++) {
+                    nativeStatsBase[i] += nativeStats[i];
+                    nativeStats[i] = 0;
+                }
+                if (streamer.start(nativeFrameCallback, nativeTransferCount, nativeTransferSize) == 0) {
+                    return true;
+                }
+                Log.w(TAG, "Native stream could not be started again, falling back to Java reads");
+                streamer.destroy();
+                nativeStreamer = null;
             }
         }
+        final Thread thread = streamThread;
+        if (thread == null || !thread.isAlive()) {
+            Log.w(TAG, "Read loop has ended, starting it again");
+            startStreamThread();
+        }
+        return true;
     }
 
-    private byte[] hexStringToByteArray(String s) {
-        int len = s.length();
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4)
-                                 + Character.digit(s.charAt(i+1), 16));
+    /**
+     * Like runPhase(), but leaves the open() timings and learned settle delays alone,
+     * a restart of a stalled stream says nothing about how fast the camera comes up.
+     */
+    private boolean restartPhase(FlirOneInitTimings.Phase phase) {
+        final int settle = initTimings.getSettleMs(phase);
+        if (settle > 0 && !sleepMs(settle)) {
+            return false;
         }
-        return data;
+        final long deadline = SystemClock.elapsedRealtime() + phase.timeoutMs;
+        int waitMs = INIT_POLL_MIN_MS;
+        while (isStreaming) {
+            try {
+                if (attemptPhase(phase)) {
+                    return true;
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error in restart phase " + phase, e);
+            }
+            final long now = SystemClock.elapsedRealtime();
+            if (now >= deadline) {
+                Log.w(TAG, "Restart: " + phase + " not ready");
+                return !phase.required;
+            }
+            if (!sleepMs((int) Math.min(waitMs, deadline - now))) {
+                return false;
+            }
+            waitMs = Math.min(waitMs * 2, INIT_POLL_MAX_MS);
+        }
+        return false;
     }
 
+    /**
+     * Starts streaming with per-frame copies of the thermal and JPEG data.
+     */
     public void startStream(FrameCallback callback) {
-        this.frameCallback = callback;
+        startStream(new CopyingFrameCallback(callback));
+    }
+
+    /**
+     * Starts streaming with pooled frames, without any per-frame allocation.
+     */
+    public void startStream(PooledFrameCallback callback) {
+        this.pooledFrameCallback = callback;
+        assembler.reset();
+        assembler.setListener(frameListener);
         isStreaming = true;
 
-        streamThread = new Thread(new Runnable() {
+        // ROS driver polls EP 0x81 and 0x83 after every read - the camera resets without it
+        frameStatusParser.reset();
+        endpointStatusParser.reset();
+        statusPoller = new FlirOneStatusPoller(connection, epControlIn, epStatus);
+        statusPoller.setListener(new FlirOneStatusPoller.StatusListener() {
+            @Override
+            public void onStatusData(int endpointAddress, byte[] data, int length) {
+                endpointStatusParser.feed(data, 0, length);
+            }
+        });
+        statusPoller.start();
+
+        if (transferProbe != null && epVideo != null) {
+            // probe reads are real video data, they go to the assembler like any other chunk.
+            // The poller already runs, without it the camera resets and the probe only sees timeouts
+            int size = transferProbe.resolve(connection, epVideo, new FlirOneTransferProbe.DataSink() {
+                @Override
+                public void onProbeData(byte[] data, int length) {
+                    processVideoData(data, length);
+                }
+            });
+            transferSize = size;
+            nativeTransferSize = size;
+            Log.d(TAG, "Transfer size " + size);
+        }
+
+        watchdog.start();
+
+        if (nativeCtrlBlock != null && startNativeStream()) {
+            return;
+        }
+
+        startStreamThread();
+    }
+
+    private void startStreamThread() {
+        Thread thread = new Thread(new Runnable() {
             @Override
             public void run() {
                 streamLoop();
             }
         });
-        streamThread.start();
+        streamThread = thread;
+        thread.start();
+    }
+
+    /**
+     * A read with the transfer size from the probe's cache failed, probe again on the next connect.
+     */
+    private void onTransferSizeFailed() {
+        final FlirOneTransferProbe probe = transferProbe;
+        if (probe != null && probe.isFromCache()) {
+            Log.w(TAG, "Read with cached transfer size " + transferSize + " failed, forgetting it");
+            probe.invalidate();
+        }
     }
 
+    private boolean startNativeStream() {
+        if (nativeStreamerUnavailable) {
+            return false;
+        }
+        FlirOneStreamer streamer;
+        try {
+            streamer = new FlirOneStreamer();
+        } catch (LinkageError e) {
+            // UnsatisfiedLinkError on the first try, NoClassDefFoundError after a failed static init
+            Log.w(TAG, "Native streamer unavailable, using Java reads", e);
+            nativeStreamerUnavailable = true;
+            return false;
+        }
+        int result = streamer.open(nativeCtrlBlock);
+        if (result == 0) {
+            result = streamer.start(nativeFrameCallback, nativeTransferCount, nativeTransferSize);
+            if (result == 0) {
+                Log.d(TAG, "Native stream started, transfers=" + nativeTransferCount + " x " + nativeTransferSize);
+                nativeStreamer = streamer;
+                return true;
+            }
+            // submitting the transfers failed, possibly their size
+            onTransferSizeFailed();
+        }
+        Log.w(TAG, "Native stream failed (" + result + "), falling back to Java reads");
+        streamer.destroy();
+        return false;
+    }
+
+    /**
+     * Copies each natively assembled frame into a pooled FlirOneFrame, so both read paths
+     * hand out the same frame type. Called on the native callback thread.
+     */
+    private final IFlirOneFrameCallback nativeFrameCallback = new IFlirOneFrameCallback() {
+        @Override
+        public void onFrame(ByteBuffer payload, int thermalSize, int jpgSize, int statusSize,
+                long sequence, long timestampNanos, int chunkCount) {
+            FlirOneFrame frame = assembler.getFramePool().acquire();
+            if (frame == null) {
+                // consumer still holds every frame
+                nativeFramesOverflowed++;
+                return;
+            }
+            int size = payload.remaining();
+            if (size > frame.getData().length) {
+                frame.release();
+                return;
+            }
+            payload.get(frame.getData(), 0, size);
+            frame.setAssembled(thermalSize, jpgSize, statusSize, sequence, timestampNanos,
+                chunkCount, FlirOneFrameAssembler.HEADER_SIZE + size);
+            frameListener.onFrameAssembled(frame);
+        }
+    };
+
     private void streamLoop() {
+        if (asyncQueueDepth > 0 && asyncReadLoop()) {
+            return;
+        }
+        syncReadLoop();
+    }
+
+    private void syncReadLoop() {
         // CRITICAL: Use 4KB buffer - smaller size that works on Glass's kernel
-        byte[] buffer = new byte[4096]; // 4KB chunks - multiple of 512
-        byte[] statusBuffer = new byte[512];
-        int timeoutCount = 0;
-        int framesReceived = 0;
+        byte[] buffer = new byte[transferSize]; // 4KB chunks by default - multiple of 512
+        int consecutiveTimeouts = 0;
+        boolean readSucceeded = false;
 
         Log.d(TAG, "Stream loop starting, epVideo=" + epVideo);
 
@@ -340,115 +712,311 @@ public class FlirOneDriver {
             }
 
             // Read from video endpoint - use 200ms timeout like ROS driver
+            final long start = SystemClock.uptimeMillis();
             int bytesRead = connection.bulkTransfer(epVideo, buffer, buffer.length, 200);
 
             if (bytesRead > 0) {
-                Log.d(TAG, "Got " + bytesRead + " bytes from video endpoint");
                 processVideoData(buffer, bytesRead);
-                timeoutCount = 0;
-                framesReceived++;
-            } else if (bytesRead == -110) {  // Timeout
+                consecutiveTimeouts = 0;
+                readSucceeded = true;
+            } else if (FlirOneTransferProbe.isTimeout(bytesRead, SystemClock.uptimeMillis() - start, 200)) {
                 timeoutCount++;
-                if (timeoutCount % 10 == 0) {
-                    Log.d(TAG, "Timeout " + timeoutCount + ", frames=" + framesReceived);
+                if (++consecutiveTimeouts % 10 == 0) {
+                    Log.d(TAG, "Timeout " + consecutiveTimeouts + ", frames=" + assembler.getFramesAssembled());
                 }
             } else {
                 Log.w(TAG, "Bulk transfer returned " + bytesRead);
+                if (!readSucceeded && bytesRead < 0) {
+                    onTransferSizeFailed();
+                }
             }
 
-            // ALWAYS poll EP 0x81 and 0x83 regardless of success - this is key!
-            // ROS driver does this after every iteration
-            if (epControlIn != null) {
-                connection.bulkTransfer(epControlIn, statusBuffer, statusBuffer.length, 10);
+            // Long runs of timeouts are a stall, the watchdog restarts the interfaces
+        }
+
+        Log.d(TAG, "Stream loop ended, frames=" + assembler.getFramesAssembled()
+            + ", dropped=" + assembler.getFramesDropped()
+            + ", resyncs=" + assembler.getResyncCount()
+            + ", chunks=" + assembler.getChunksFed()
+            + ", timeouts=" + timeoutCount);
+    }
+
+    /**
+     * Streams EP 0x85 through a ring of queued UsbRequests, draining completions with
+     * requestWait() and re-queueing each buffer as soon as its data has been consumed.
+     * @return false if the requests could not be set up, or the ring broke down while still
+     * streaming, and the caller should fall back to sync reads
+     */
+    private boolean asyncReadLoop() {
+        if (epVideo == null) {
+            Log.e(TAG, "Video endpoint not found!");
+            return true;
+        }
+
+        final int depth = asyncQueueDepth;
+        final int size = transferSize;
+        final UsbRequest[] requests = new UsbRequest[depth];
+        int pending = 0;
+
+        try {
+            for (int i = 0; i < depth; i++) {
+                UsbRequest request = new UsbRequest();
+                if (!request.initialize(connection, epVideo)) {
+                    Log.w(TAG, "UsbRequest initialize failed, falling back to synchronous reads");
+                    request.close();
+                    cancelRequests(requests);
+                    drainRequests(pending);
+                    return false;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(size);
+                request.setClientData(buffer);
+                requests[i] = request;
+                if (request.queue(buffer, size)) {
+                    pending++;
+                } else {
+                    Log.w(TAG, "Failed to queue request " + i);
+                }
+            }
+            if (pending == 0) {
+                Log.w(TAG, "No request could be queued, falling back to synchronous reads");
+                return false;
             }
 
-            if (epStatus != null) {
-                connection.bulkTransfer(epStatus, statusBuffer, statusBuffer.length, 10);
+            synchronized (this) {
+                activeRequests = requests;
             }
-            
-            // Break if too many timeouts
-            if (timeoutCount > 100) {
-                Log.e(TAG, "Too many timeouts, stopping stream");
-                break;
+            if (!isStreaming) {
+                // stopStream() ran before the ring was published
+                cancelRequests(requests);
             }
+            Log.d(TAG, "Async stream loop starting, depth=" + depth + ", size=" + size);
+
+            while (pending > 0) {
+                UsbRequest request = connection.requestWait();
+                if (request == null) {
+                    Log.e(TAG, "requestWait failed, " + pending + " requests still pending");
+                    // the sync loop must not read EP 0x85 while these are still queued
+                    cancelRequests(requests);
+                    break;
+                }
+                pending--;
+
+                ByteBuffer buffer = (ByteBuffer) request.getClientData();
+                int bytesRead = buffer.position();
+                if (bytesRead > 0 && isStreaming) {
+                    processVideoData(buffer.array(), bytesRead);
+                }
+
+                if (isStreaming) {
+                    buffer.clear();
+                    if (request.queue(buffer, size)) {
+                        pending++;
+                        // stopStream() may have cancelled the ring between our check and the queue
+                        if (!isStreaming) {
+                            request.cancel();
+                        }
+                    } else {
+                        Log.w(TAG, "Failed to re-queue request, " + pending + " left in flight");
+                        onTransferSizeFailed();
+                    }
+                }
+            }
+        } finally {
+            synchronized (this) {
+                activeRequests = null;
+            }
+            for (UsbRequest request : requests) {
+                if (request != null) {
+                    request.close();
+                }
+            }
+        }
+
+        Log.d(TAG, "Async stream loop ended, frames=" + assembler.getFramesAssembled()
+            + ", dropped=" + assembler.getFramesDropped()
+            + ", resyncs=" + assembler.getResyncCount()
+            + ", chunks=" + assembler.getChunksFed());
+        if (isStreaming) {
+            Log.w(TAG, "Async requests lost while streaming, falling back to synchronous reads");
+            return false;
         }
+        return true;
+    }
 
-        Log.d(TAG, "Stream loop ended");
+    private void drainRequests(int pending) {
+        while (pending > 0 && connection.requestWait() != null) {
+            pending--;
+        }
+    }
+
+    private static void cancelRequests(UsbRequest[] requests) {
+        for (UsbRequest request : requests) {
+            if (request != null) {
+                request.cancel();
+            }
+        }
     }
 
     private void processVideoData(byte[] data, int length) {
-        // ... (remaining code is correct, no changes needed) ...
-        // Check for magic bytes at start of new frame
-        if (length >= 4 &&
-                data[0] == MAGIC_BYTES[0] &&
-                data[1] == MAGIC_BYTES[1] &&
-                data[2] == MAGIC_BYTES[2] &&
-                data[3] == MAGIC_BYTES[3]) {
-            // New frame starts, reset buffer
-            frameBufferPos = 0;
-        }
-
-        // Don't overflow buffer
-        if (frameBufferPos + length > FRAME_BUFFER_SIZE) {
-            frameBufferPos = 0;
-            return;
+        assembler.feed(data, 0, length, SystemClock.elapsedRealtimeNanos());
+    }
+
+    private final FlirOneFrameAssembler.FrameListener frameListener = new FlirOneFrameAssembler.FrameListener() {
+        @Override
+        public void onFrameAssembled(FlirOneFrame frame) {
+            watchdog.onFrameArrived();
+
+            final long reports = frameStatusParser.getStateReports();
+            if (frame.getStatusSize() > 0) {
+                frameStatusParser.feed(frame.getData(), frame.getStatusOffset(), frame.getStatusSize());
+                // each block is one complete object, don't let a truncated one leak into the next
+                frameStatusParser.reset();
+            }
+            // the frame's own status block is the authority for that frame when it has the state
+            frame.setImageUnstable(frameStatusParser.getStateReports() != reports ?
+                frameStatusParser.isImageUnstable() : isImageUnstable());
+
+            // FLIR ONE thermal is 160x120 for Gen 2, 80x60 for Gen 1
+            // We'll auto-detect based on data size
+            int pixels = frame.getThermalSize() / 2; // 16-bit data
+            if (frame.isThermalPadded()) {
+                // Gen 2: 164-word rows, unpacked to dense 160x120 on delivery
+                frame.setThermalDimensions(FlirOneThermalUnpacker.WIDTH, FlirOneThermalUnpacker.HEIGHT);
+            } else if (pixels == 80 * 60) {
+                frame.setThermalDimensions(80, 60);
+            } else {
+                frame.setThermalDimensions(160, 120);
+            }
+
+            PooledFrameCallback callback = pooledFrameCallback;
+            if (callback != null) {
+                callback.onFrame(frame); // callback owns the frame now
+            } else {
+                frame.release();
+            }
         }
+    };
 
-        // Copy data to frame buffer
-        System.arraycopy(data, 0, frameBuffer, frameBufferPos, length);
-        frameBufferPos += length;
-
-        // Check if we have a complete frame
-        if (frameBufferPos >= 28) { // Minimum header size
-            // Parse header
-            int frameSize = getInt32(frameBuffer, 8);
-            int thermalSize = getInt32(frameBuffer, 12);
-            int jpgSize = getInt32(frameBuffer, 16);
-            int statusSize = getInt32(frameBuffer, 20);
-
-            // Check if we have the complete frame
-            if (frameBufferPos >= frameSize + 28) {
-                // Extract thermal data (16-bit raw)
-                if (thermalSize > 0 && frameCallback != null) {
-                    byte[] thermalData = new byte[thermalSize];
-                    System.arraycopy(frameBuffer, 28, thermalData, 0, thermalSize);
-
-                    // FLIR ONE thermal is 160x120 for Gen 2, 80x60 for Gen 1
-                    // We'll auto-detect based on data size
-                    int pixels = thermalSize / 2; // 16-bit data
-                    int width = 160;
-                    int height = 120;
-                    if (pixels == 80 * 60) {
-                        width = 80;
-                        height = 60;
-                    }
+    /**
+     * Adapts the copying FrameCallback API to pooled frames.
+     */
+    private static class CopyingFrameCallback implements PooledFrameCallback {
+        private final FrameCallback callback;
+
+        CopyingFrameCallback(FrameCallback callback) {
+            this.callback = callback;
+        }
 
-                    frameCallback.onThermalFrame(thermalData, width, height);
+        @Override
+        public void onFrame(FlirOneFrame frame) {
+            try {
+                // Extract thermal data (16-bit raw, dense - row padding removed)
+                if (frame.getThermalSize() > 0) {
+                    byte[] thermalData = new byte[frame.getDenseThermalSize()];
+                    frame.copyThermalLittleEndian(thermalData);
+                    callback.onThermalFrame(thermalData, frame.getThermalWidth(), frame.getThermalHeight());
                 }
 
                 // Extract JPEG data if present
-                if (jpgSize > 0 && frameCallback != null) {
-                    byte[] jpegData = new byte[jpgSize];
-                    System.arraycopy(frameBuffer, 28 + thermalSize, jpegData, 0, jpgSize);
-                    frameCallback.onVisibleFrame(jpegData);
+                if (frame.getJpegSize() > 0) {
+                    byte[] jpegData = new byte[frame.getJpegSize()];
+                    System.arraycopy(frame.getData(), frame.getJpegOffset(), jpegData, 0, jpegData.length);
+                    callback.onVisibleFrame(jpegData);
                 }
-
-                // Reset buffer for next frame
-                frameBufferPos = 0;
+            } finally {
+                frame.release();
             }
         }
+
+        @Override
+        public void onError(String error) {
+            callback.onError(error);
+        }
     }
 
-    private int getInt32(byte[] buffer, int offset) {
-        return (buffer[offset] & 0xFF) |
-                ((buffer[offset + 1] & 0xFF) << 8) |
-                ((buffer[offset + 2] & 0xFF) << 16) |
-                ((buffer[offset + 3] & 0xFF) << 24);
+    /**
+     * @return the EP 0x85 frame parser, for its frame/resync statistics
+     */
+    public FlirOneFrameAssembler getFrameAssembler() {
+        return assembler;
+    }
+
+    /**
+     * @return frames assembled on either read path since the driver was created
+     */
+    public long getFramesAssembled() {
+        return assembler.getFramesAssembled() + nativeStat(FlirOneStreamer.STAT_FRAMES);
+    }
+
+    /**
+     * @return frames lost to overflow or truncated by a resync, overflows included
+     */
+    public long getFramesDropped() {
+        return assembler.getFramesDropped() + nativeStat(FlirOneStreamer.STAT_DROPPED) + nativeFramesOverflowed;
     }
 
+    /**
+     * @return frames dropped because the consumer still held every pooled frame
+     */
+    public long getFramesOverflowed() {
+        return assembler.getFramesOverflowed() + nativeStat(FlirOneStreamer.STAT_OVERFLOWS) + nativeFramesOverflowed;
+    }
+
+    public long getResyncCount() {
+        return assembler.getResyncCount() + nativeStat(FlirOneStreamer.STAT_RESYNCS);
+    }
+
+    /**
+     * @return EP 0x85 reads that timed out, synchronous read loop only
+     */
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * @return USB chunks read from EP 0x85
+     */
+    public long getChunksReceived() {
+        return assembler.getChunksFed() + nativeStat(FlirOneStreamer.STAT_TRANSFERS);
+    }
+
+    public long getBytesReceived() {
+        return assembler.getBytesFed() + nativeStat(FlirOneStreamer.STAT_BYTES);
+    }
+
+    private long nativeStat(int index) {
+        synchronized (nativeStats) {
+            FlirOneStreamer streamer = nativeStreamer;
+            if (streamer != null) {
+                streamer.getStatistics(nativeStats);
+            }
+            return nativeStatsBase[index] + nativeStats[index];
+        }
+    }
 
     public void stopStream() {
         isStreaming = false;
+        watchdog.stop();
+        if (nativeStreamer != null) {
+            synchronized (nativeStats) {
+                nativeStreamer.getStatistics(nativeStats);
+                nativeStreamer.destroy();
+                nativeStreamer = null;
+                Log.d(TAG, "Native stream ended, frames=" + nativeStats[FlirOneStreamer.STAT_FRAMES]
+                    + ", dropped=" + nativeStats[FlirOneStreamer.STAT_DROPPED]
+                    + ", resyncs=" + nativeStats[FlirOneStreamer.STAT_RESYNCS]);
+                for (int i = 0; i < nativeStats.length; i++) {
+                    nativeStatsBase[i] += nativeStats[i];
+                    nativeStats[i] = 0;
+                }
+            }
+        }
+        synchronized (this) {
+            if (activeRequests != null) {
+                // wakes up requestWait() so the async loop can drain and exit
+                cancelRequests(activeRequests);
+            }
+        }
         if (streamThread != null) {
             try {
                 streamThread.join(1000);
@@ -456,6 +1024,11 @@ public class FlirOneDriver {
                 // Ignore
             }
         }
+        if (statusPoller != null) {
+            statusPoller.stop();
+            Log.d(TAG, "Status poller: " + statusPoller);
+        }
+        Log.d(TAG, "Watchdog: " + watchdog);
     }
 
     public void close() {
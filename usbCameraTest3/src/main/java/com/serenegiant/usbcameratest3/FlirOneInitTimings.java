@@ -0,0 +1,133 @@
+package com.serenegiant.usbcameratest3;
+
+import android.content.SharedPreferences;
+
+/**
+ * Per-phase settle delays and latencies of the FLIR ONE initialization sequence.
+ *
+ * The settle delay is how long a phase waits before its first attempt. It is learned from
+ * each successful open: a phase that needed retries remembers how long it took to become ready,
+ * a phase that succeeded straight away gets its delay halved. Timings are persisted per
+ * device and kernel, since readiness depends on both the camera firmware and the host driver.
+ */
+public class FlirOneInitTimings {
+    private static final String KEY_PREFIX = "flir_one_init_";
+
+    public enum Phase {
+        CLAIM_INTERFACES(600, true),
+        FIND_ENDPOINTS(500, true),
+        SET_ALTERNATES(500, true),
+        STOP_STREAMS(300, false),
+        START_FILEIO(300, false),
+        CAMERA_FILES(300, false),
+        INITIAL_STATUS(300, false),
+        START_VIDEO(500, true);
+
+        /** Upper bound on the time spent polling this phase for readiness */
+        public final int timeoutMs;
+        /** Whether open() fails when the phase times out */
+        public final boolean required;
+
+        Phase(int timeoutMs, boolean required) {
+            this.timeoutMs = timeoutMs;
+            this.required = required;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final int[] settleMs = new int[PHASES.length];
+    private final long[] latencyMs = new long[PHASES.length];
+    private final int[] attempts = new int[PHASES.length];
+
+    public int getSettleMs(Phase phase) {
+        return settleMs[phase.ordinal()];
+    }
+
+    /**
+     * @return wall time of the phase in the last open(), including its settle delay
+     */
+    public long getLatencyMs(Phase phase) {
+        return latencyMs[phase.ordinal()];
+    }
+
+    public int getAttempts(Phase phase) {
+        return attempts[phase.ordinal()];
+    }
+
+    public long getTotalLatencyMs() {
+        long total = 0;
+        for (long latency : latencyMs) {
+            total += latency;
+        }
+        return total;
+    }
+
+    /**
+     * Records a phase outcome and adapts its settle delay for the next open().
+     * @param readyAfterMs time from the end of the settle delay to the start of the successful attempt
+     */
+    void record(Phase phase, boolean succeeded, int attemptCount, long readyAfterMs, long elapsedMs) {
+        final int i = phase.ordinal();
+        attempts[i] = attemptCount;
+        latencyMs[i] = elapsedMs;
+        if (!succeeded) {
+            // nothing worked, start polling from scratch next time
+            settleMs[i] = 0;
+        } else if (attemptCount == 1) {
+            settleMs[i] /= 2;
+        } else {
+            settleMs[i] = (int) Math.min(settleMs[i] + readyAfterMs, phase.timeoutMs);
+        }
+    }
+
+    void reset() {
+        for (int i = 0; i < PHASES.length; i++) {
+            settleMs[i] = 0;
+            latencyMs[i] = 0;
+            attempts[i] = 0;
+        }
+    }
+
+    /**
+     * @return preference key for a device on the running kernel
+     */
+    public static String getKey(int vendorId, int productId) {
+        return String.format("%s%04x:%04x/%s", KEY_PREFIX, vendorId, productId, System.getProperty("os.version"));
+    }
+
+    public void load(SharedPreferences prefs, String key) {
+        reset();
+        String value = prefs.getString(key, null);
+        if (value == null) {
+            return;
+        }
+        String[] fields = value.split(",");
+        for (int i = 0; i < PHASES.length && i < fields.length; i++) {
+            try {
+                settleMs[i] = Math.max(0, Math.min(Integer.parseInt(fields[i]), PHASES[i].timeoutMs));
+            } catch (NumberFormatException e) {
+                settleMs[i] = 0;
+            }
+        }
+    }
+
+    public void save(SharedPreferences prefs, String key) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < PHASES.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(settleMs[i]);
+        }
+        prefs.edit().putString(key, sb.toString()).apply();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < PHASES.length; i++) {
+            sb.append(PHASES[i]).append('=').append(latencyMs[i]).append("ms/")
+                .append(attempts[i]).append(" (settle ").append(settleMs[i]).append("ms), ");
+        }
+        return sb.append("total=").append(getTotalLatencyMs()).append("ms").toString();
+    }
+}
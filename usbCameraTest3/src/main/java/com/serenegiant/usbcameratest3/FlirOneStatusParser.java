@@ -0,0 +1,352 @@
+package com.serenegiant.usbcameratest3;
+
+/**
+ * Incremental parser for the FLIR ONE status JSON, from EP 0x81/0x83 packets and from the
+ * status block at the end of each frame.
+ *
+ * Input may be split anywhere and may carry binary packet headers or NUL terminators
+ * between JSON objects, everything outside an object is skipped. Only the fields below are
+ * interpreted, at any nesting depth, and each raises a typed event when its state changes:
+ * - shutterState: "FFC"/"CLOSED"/"OFF" mean the shutter is in front of the sensor
+ * - ffcState: "FFC_PROGRESS" while a flat-field correction runs
+ * - batteryPercentage / percentage: battery level in percent
+ * - batteryVoltage / voltage: battery voltage
+ * Keys and values are collected in reused buffers, feeding does not allocate.
+ * Not thread safe, use one parser per feeding thread. The parsed states may be read from any thread.
+ */
+public class FlirOneStatusParser {
+    private static final int MAX_TOKEN_LENGTH = 64;  // longer strings are truncated, none of ours are
+    private static final int MAX_DEPTH = 31;
+
+    public interface Listener {
+        void onShutterStateChanged(boolean closed);
+        void onFfcStateChanged(boolean inProgress);
+        void onBatteryChanged(int percent, float voltage);
+    }
+
+    // Scanner states
+    private static final int STATE_OUTSIDE = 0;     // between objects
+    private static final int STATE_EXPECT_TOKEN = 1;
+    private static final int STATE_STRING = 2;
+    private static final int STATE_STRING_ESCAPE = 3;
+    private static final int STATE_LITERAL = 4;     // number, true, false, null
+
+    private final char[] key = new char[MAX_TOKEN_LENGTH];
+    private int keyLength;
+    private final char[] value = new char[MAX_TOKEN_LENGTH];
+    private int valueLength;
+
+    private int state = STATE_OUTSIDE;
+    private int depth = 0;
+    private int arrayMask = 0;      // bit n set if the container at depth n is an array
+    private boolean expectingKey;
+    private boolean stringIsKey;
+
+    private Listener listener;
+
+    // Readable from other threads
+    private volatile boolean shutterClosed = false;
+    private volatile boolean ffcInProgress = false;
+    private volatile int batteryPercent = -1;
+    private volatile float batteryVoltage = Float.NaN;
+    // when shutterState or ffcState was last reported, changed or not
+    private volatile long stateReports = 0;
+    private volatile long lastStateReportNanos = 0;
+
+    private long objectsParsed = 0;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Drops any partial object, keeps the last known states.
+     */
+    public void reset() {
+        state = STATE_OUTSIDE;
+        depth = 0;
+        arrayMask = 0;
+        keyLength = 0;
+        valueLength = 0;
+    }
+
+    public void feed(byte[] data, int offset, int length) {
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            final char c = (char) (data[i] & 0xFF);
+            if (c == 0) {
+                // packet terminator, anything unfinished is lost
+                reset();
+                continue;
+            }
+            switch (state) {
+            case STATE_OUTSIDE:
+                if (c == '{') {
+                    depth = 0;
+                    arrayMask = 0;
+                    push(false);
+                    state = STATE_EXPECT_TOKEN;
+                }
+                break;
+
+            case STATE_STRING:
+                if (c == '"') {
+                    endString();
+                } else if (c == '\\') {
+                    state = STATE_STRING_ESCAPE;
+                } else {
+                    appendToken(c);
+                }
+                break;
+
+            case STATE_STRING_ESCAPE:
+                appendToken(c);
+                state = STATE_STRING;
+                break;
+
+            case STATE_LITERAL:
+                if (c == ',' || c == '}' || c == ']' || c <= ' ') {
+                    onValue(false);
+                    state = STATE_EXPECT_TOKEN;
+                    structural(c);
+                } else {
+                    appendValue(c);
+                }
+                break;
+
+            case STATE_EXPECT_TOKEN:
+                if (c == '"') {
+                    stringIsKey = expectingKey;
+                    if (stringIsKey) {
+                        keyLength = 0;
+                    } else {
+                        valueLength = 0;
+                    }
+                    state = STATE_STRING;
+                } else if (c == '{' || c == '[' || c == '}' || c == ']' || c == ',' || c == ':' || c <= ' ') {
+                    structural(c);
+                } else {
+                    valueLength = 0;
+                    appendValue(c);
+                    state = STATE_LITERAL;
+                }
+                break;
+            }
+        }
+    }
+
+    private void structural(char c) {
+        switch (c) {
+        case '{':
+            push(false);
+            break;
+        case '[':
+            push(true);
+            break;
+        case '}':
+        case ']':
+            if (--depth <= 0) {
+                objectsParsed++;
+                state = STATE_OUTSIDE;
+            } else {
+                expectingKey = false;
+            }
+            break;
+        case ',':
+            expectingKey = !isArray();
+            break;
+        case ':':
+            expectingKey = false;
+            break;
+        }
+    }
+
+    private void push(boolean array) {
+        if (depth >= MAX_DEPTH) {
+            reset();
+            return;
+        }
+        if (array) {
+            arrayMask |= 1 << depth;
+        } else {
+            arrayMask &= ~(1 << depth);
+        }
+        depth++;
+        expectingKey = !array;
+    }
+
+    private boolean isArray() {
+        return depth > 0 && (arrayMask & (1 << (depth - 1))) != 0;
+    }
+
+    private void appendToken(char c) {
+        if (stringIsKey) {
+            if (keyLength < MAX_TOKEN_LENGTH) key[keyLength++] = c;
+        } else {
+            appendValue(c);
+        }
+    }
+
+    private void appendValue(char c) {
+        if (valueLength < MAX_TOKEN_LENGTH) value[valueLength++] = c;
+    }
+
+    private void endString() {
+        state = STATE_EXPECT_TOKEN;
+        if (!stringIsKey) {
+            onValue(true);
+        }
+    }
+
+    private void onValue(boolean isString) {
+        if (isArray()) {
+            return;
+        }
+        if (isString) {
+            if (keyIs("shutterState")) {
+                setShutterClosed(valueIs("FFC") || valueIs("CLOSED") || valueIs("OFF"));
+                onStateReported();
+            } else if (keyIs("ffcState")) {
+                setFfcInProgress(valueIs("FFC_PROGRESS"));
+                onStateReported();
+            }
+        } else {
+            if (keyIs("batteryPercentage") || keyIs("percentage")) {
+                float number = parseNumber();
+                int percent = Float.isNaN(number) ? -1 : (int) number;
+                if (percent >= 0 && percent != batteryPercent) {
+                    batteryPercent = percent;
+                    if (listener != null) listener.onBatteryChanged(batteryPercent, batteryVoltage);
+                }
+            } else if (keyIs("batteryVoltage") || keyIs("voltage")) {
+                float voltage = parseNumber();
+                if (!Float.isNaN(voltage)) {
+                    batteryVoltage = voltage;
+                }
+            }
+        }
+    }
+
+    private void onStateReported() {
+        lastStateReportNanos = System.nanoTime();
+        stateReports++;
+    }
+
+    private void setShutterClosed(boolean closed) {
+        if (closed != shutterClosed) {
+            shutterClosed = closed;
+            if (listener != null) listener.onShutterStateChanged(closed);
+        }
+    }
+
+    private void setFfcInProgress(boolean inProgress) {
+        if (inProgress != ffcInProgress) {
+            ffcInProgress = inProgress;
+            if (listener != null) listener.onFfcStateChanged(inProgress);
+        }
+    }
+
+    private boolean keyIs(String s) {
+        return tokenEquals(key, keyLength, s);
+    }
+
+    private boolean valueIs(String s) {
+        return tokenEquals(value, valueLength, s);
+    }
+
+    private static boolean tokenEquals(char[] token, int length, String s) {
+        if (length != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (token[i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the value buffer as a plain decimal number, exponents are not used by the camera.
+     * @return NaN if it is not a number
+     */
+    private float parseNumber() {
+        int i = 0;
+        boolean negative = false;
+        if (valueLength > 0 && value[0] == '-') {
+            negative = true;
+            i++;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        boolean fraction = false;
+        boolean digits = false;
+        for (; i < valueLength; i++) {
+            char c = value[i];
+            if (c >= '0' && c <= '9') {
+                if (mantissa < Long.MAX_VALUE / 10) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (fraction) scale++;
+                }
+                digits = true;
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return Float.NaN;
+            }
+        }
+        if (!digits) {
+            return Float.NaN;
+        }
+        double v = mantissa;
+        while (scale-- > 0) v /= 10;
+        return (float) (negative ? -v : v);
+    }
+
+    public boolean isShutterClosed() {
+        return shutterClosed;
+    }
+
+    public boolean isFfcInProgress() {
+        return ffcInProgress;
+    }
+
+    /**
+     * @return true while frames are frozen or unreliable: FFC running or shutter closed
+     */
+    public boolean isImageUnstable() {
+        return ffcInProgress || shutterClosed;
+    }
+
+    /**
+     * @return how many shutterState/ffcState values were parsed, changed or not
+     */
+    public long getStateReports() {
+        return stateReports;
+    }
+
+    /**
+     * @return System.nanoTime() of the last shutterState/ffcState value, 0 if none yet
+     */
+    public long getLastStateReportNanos() {
+        return lastStateReportNanos;
+    }
+
+    /**
+     * @return last reported battery level, -1 if unknown
+     */
+    public int getBatteryPercent() {
+        return batteryPercent;
+    }
+
+    /**
+     * @return last reported battery voltage, NaN if unknown
+     */
+    public float getBatteryVoltage() {
+        return batteryVoltage;
+    }
+
+    public long getObjectsParsed() {
+        return objectsParsed;
+    }
+}
@@ -0,0 +1,199 @@
+package com.serenegiant.usbcameratest3;
+
+import android.hardware.usb.UsbDeviceConnection;
+import android.hardware.usb.UsbEndpoint;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Polls the FLIR ONE status endpoints (EP 0x81 and EP 0x83) on its own low priority thread
+ * so the video reader never waits on status traffic.
+ * The camera needs these endpoints drained regularly as a keep-alive, so the interval
+ * drops to the minimum while status data is flowing and backs off to the maximum while quiet.
+ */
+public class FlirOneStatusPoller {
+    private static final String TAG = "FlirOneStatusPoller";
+    private static final boolean DEBUG = true;
+
+    private static final int READ_TIMEOUT_MS = 10;
+    private static final int DEFAULT_MIN_INTERVAL_MS = 5;
+    private static final int DEFAULT_MAX_INTERVAL_MS = 100; // keep-alive limit
+    private static final int STATUS_BUFFER_SIZE = 512;
+
+    public interface StatusListener {
+        /**
+         * Called on the poller thread, the buffer is reused after this returns.
+         */
+        void onStatusData(int endpointAddress, byte[] data, int length);
+    }
+
+    private final UsbDeviceConnection connection;
+    private final UsbEndpoint epControlIn;
+    private final UsbEndpoint epStatus;
+    private final byte[] statusBuffer = new byte[STATUS_BUFFER_SIZE];
+
+    private volatile boolean isRunning = false;
+    private Thread pollThread;
+    private StatusListener listener;
+
+    private int minIntervalMs = DEFAULT_MIN_INTERVAL_MS;
+    private int maxIntervalMs = DEFAULT_MAX_INTERVAL_MS;
+    private volatile int currentIntervalMs = DEFAULT_MIN_INTERVAL_MS;
+
+    // Counters, written only by the poller thread
+    private volatile long pollCycles = 0;
+    private volatile long controlPackets = 0;
+    private volatile long controlBytes = 0;
+    private volatile long statusPackets = 0;
+    private volatile long statusBytes = 0;
+    private volatile long emptyPolls = 0;
+
+    public FlirOneStatusPoller(UsbDeviceConnection connection, UsbEndpoint epControlIn, UsbEndpoint epStatus) {
+        this.connection = connection;
+        this.epControlIn = epControlIn;
+        this.epStatus = epStatus;
+    }
+
+    public void setListener(StatusListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param minMs interval used while the camera is sending status data
+     * @param maxMs interval backed off to while it is quiet, keep this short enough for keep-alive
+     */
+    public void setPollIntervals(int minMs, int maxMs) {
+        if (minMs < 1 || maxMs < minMs) {
+            throw new IllegalArgumentException("invalid poll intervals: " + minMs + ".." + maxMs);
+        }
+        minIntervalMs = minMs;
+        maxIntervalMs = maxMs;
+        currentIntervalMs = minMs;
+    }
+
+    public synchronized void start() {
+        if (isRunning) {
+            return;
+        }
+        isRunning = true;
+        currentIntervalMs = minIntervalMs;
+        pollThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                pollLoop();
+            }
+        }, TAG);
+        pollThread.start();
+    }
+
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            isRunning = false;
+            thread = pollThread;
+            pollThread = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(500);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    private void pollLoop() {
+        if (DEBUG) Log.d(TAG, "Status poller starting");
+
+        while (isRunning) {
+            boolean gotData = false;
+
+            if (epControlIn != null) {
+                int len = connection.bulkTransfer(epControlIn, statusBuffer, statusBuffer.length, READ_TIMEOUT_MS);
+                if (len > 0) {
+                    controlPackets++;
+                    controlBytes += len;
+                    gotData = true;
+                    notifyListener(epControlIn.getAddress(), len);
+                }
+            }
+
+            if (epStatus != null) {
+                int len = connection.bulkTransfer(epStatus, statusBuffer, statusBuffer.length, READ_TIMEOUT_MS);
+                if (len > 0) {
+                    statusPackets++;
+                    statusBytes += len;
+                    gotData = true;
+                    notifyListener(epStatus.getAddress(), len);
+                }
+            }
+
+            pollCycles++;
+            if (gotData) {
+                currentIntervalMs = minIntervalMs;
+            } else {
+                emptyPolls++;
+                currentIntervalMs = Math.min(currentIntervalMs * 2, maxIntervalMs);
+            }
+
+            try {
+                Thread.sleep(currentIntervalMs);
+            } catch (InterruptedException e) {
+                // stop() interrupts the sleep
+            }
+        }
+
+        if (DEBUG) Log.d(TAG, "Status poller ended: " + this);
+    }
+
+    private void notifyListener(int endpointAddress, int length) {
+        StatusListener l = listener;
+        if (l != null) {
+            try {
+                l.onStatusData(endpointAddress, statusBuffer, length);
+            } catch (Exception e) {
+                Log.e(TAG, "Status listener failed", e);
+            }
+        }
+    }
+
+    public long getPollCycles() {
+        return pollCycles;
+    }
+
+    public long getControlPackets() {
+        return controlPackets;
+    }
+
+    public long getControlBytes() {
+        return controlBytes;
+    }
+
+    public long getStatusPackets() {
+        return statusPackets;
+    }
+
+    public long getStatusBytes() {
+        return statusBytes;
+    }
+
+    public long getEmptyPolls() {
+        return emptyPolls;
+    }
+
+    public int getCurrentIntervalMs() {
+        return currentIntervalMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("polls=%d, empty=%d, ep81=%d pkts/%d bytes, ep83=%d pkts/%d bytes, interval=%dms",
+            pollCycles, emptyPolls, controlPackets, controlBytes, statusPackets, statusBytes, currentIntervalMs);
+    }
+}
@@ -0,0 +1,211 @@
+package com.serenegiant.usbcameratest3;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Detects FLIR ONE stream stalls from gaps between assembled frames and restarts the
+ * camera's interfaces on the existing connection, backing off exponentially while the
+ * stream stays down. The restart also brings back a read loop that has ended, so a
+ * transient bus hiccup does not need a replug or a new connection.
+ */
+public class FlirOneStreamWatchdog {
+    private static final String TAG = "FlirOneStreamWatchdog";
+
+    private static final int DEFAULT_STALL_THRESHOLD_MS = 2000; // FFC pauses stay well below this
+    private static final int DEFAULT_MIN_BACKOFF_MS = 250;
+    private static final int DEFAULT_MAX_BACKOFF_MS = 8000;
+
+    public interface Listener {
+        /**
+         * Called on the watchdog thread when no frame arrived for the stall threshold.
+         */
+        void onStreamStalled(long gapMs);
+
+        /**
+         * Called on the watchdog thread when frames flow again.
+         * @param recoveryMs time from the last frame before the stall to the first one after it
+         * @param restarts interface restarts it took
+         */
+        void onStreamRecovered(long recoveryMs, int restarts);
+    }
+
+    interface Restarter {
+        /**
+         * Re-runs the stop/start interface sequence.
+         * @return false if a required step failed
+         */
+        boolean restartStream();
+    }
+
+    private final Restarter restarter;
+    private volatile Listener listener;
+
+    private int stallThresholdMs = DEFAULT_STALL_THRESHOLD_MS;
+    private int minBackoffMs = DEFAULT_MIN_BACKOFF_MS;
+    private int maxBackoffMs = DEFAULT_MAX_BACKOFF_MS;
+
+    private volatile boolean isRunning = false;
+    private Thread watchThread;
+
+    // Written by the stream thread only
+    private volatile long framesSeen = 0;
+    private volatile long lastFrameTime = 0;
+
+    // Statistics
+    private volatile int stallCount = 0;
+    private volatile int recoveryCount = 0;
+    private volatile int restartAttempts = 0;
+    private volatile long lastRecoveryMs = 0;
+    private volatile long maxRecoveryMs = 0;
+
+    FlirOneStreamWatchdog(Restarter restarter) {
+        this.restarter = restarter;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param stallThresholdMs frame gap treated as a stall
+     * @param minBackoffMs wait after the first restart before trying again
+     * @param maxBackoffMs upper bound of the doubling wait between restarts
+     */
+    public void setTimings(int stallThresholdMs, int minBackoffMs, int maxBackoffMs) {
+        if (stallThresholdMs < 1 || minBackoffMs < 1 || maxBackoffMs < minBackoffMs) {
+            throw new IllegalArgumentException("invalid watchdog timings: " + stallThresholdMs
+                + ", " + minBackoffMs + ".." + maxBackoffMs);
+        }
+        this.stallThresholdMs = stallThresholdMs;
+        this.minBackoffMs = minBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Called by the stream thread for every assembled frame.
+     */
+    void onFrameArrived() {
+        lastFrameTime = SystemClock.elapsedRealtime();
+        framesSeen++;
+    }
+
+    public synchronized void start() {
+        if (isRunning) {
+            return;
+        }
+        isRunning = true;
+        // give the first frame the same grace period as any other
+        lastFrameTime = SystemClock.elapsedRealtime();
+        watchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watchLoop();
+            }
+        }, TAG);
+        watchThread.start();
+    }
+
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            isRunning = false;
+            thread = watchThread;
+            watchThread = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private void watchLoop() {
+        final int checkIntervalMs = Math.max(stallThresholdMs / 4, 10);
+        boolean stalled = false;
+        long stallFrameTime = 0;
+        long stallFrames = 0;
+        long nextRestart = 0;
+        int backoffMs = minBackoffMs;
+        int restarts = 0;
+
+        while (isRunning) {
+            try {
+                Thread.sleep(checkIntervalMs);
+            } catch (InterruptedException e) {
+                // stop() interrupts the sleep
+                continue;
+            }
+            final long now = SystemClock.elapsedRealtime();
+
+            if (stalled) {
+                if (framesSeen != stallFrames) {
+                    final long recoveryMs = lastFrameTime - stallFrameTime;
+                    stalled = false;
+                    recoveryCount++;
+                    lastRecoveryMs = recoveryMs;
+                    maxRecoveryMs = Math.max(maxRecoveryMs, recoveryMs);
+                    Log.i(TAG, "Stream recovered after " + recoveryMs + "ms, restarts=" + restarts);
+                    Listener l = listener;
+                    if (l != null) l.onStreamRecovered(recoveryMs, restarts);
+                } else if (now >= nextRestart) {
+                    restart(++restarts);
+                    nextRestart = SystemClock.elapsedRealtime() + backoffMs;
+                    backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+                }
+            } else if (now - lastFrameTime > stallThresholdMs) {
+                stalled = true;
+                stallFrameTime = lastFrameTime;
+                stallFrames = framesSeen;
+                stallCount++;
+                backoffMs = minBackoffMs;
+                restarts = 0;
+                Log.w(TAG, "Stream stalled, no frame for " + (now - stallFrameTime) + "ms");
+                Listener l = listener;
+                if (l != null) l.onStreamStalled(now - stallFrameTime);
+                restart(++restarts);
+                nextRestart = SystemClock.elapsedRealtime() + backoffMs;
+                backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+            }
+        }
+    }
+
+    private void restart(int attempt) {
+        restartAttempts++;
+        try {
+            boolean ok = restarter.restartStream();
+            Log.d(TAG, "Interface restart " + attempt + (ok ? " done" : " failed"));
+        } catch (Exception e) {
+            Log.e(TAG, "Interface restart " + attempt + " failed", e);
+        }
+    }
+
+    public int getStallCount() {
+        return stallCount;
+    }
+
+    public int getRecoveryCount() {
+        return recoveryCount;
+    }
+
+    public int getRestartAttempts() {
+        return restartAttempts;
+    }
+
+    public long getLastRecoveryMs() {
+        return lastRecoveryMs;
+    }
+
+    public long getMaxRecoveryMs() {
+        return maxRecoveryMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("stalls=%d, recovered=%d, restarts=%d, lastRecovery=%dms, maxRecovery=%dms",
+            stallCount, recoveryCount, restartAttempts, lastRecoveryMs, maxRecoveryMs);
+    }
+}
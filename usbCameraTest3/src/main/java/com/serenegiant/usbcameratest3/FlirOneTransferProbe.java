@@ -0,0 +1,180 @@
+package com.serenegiant.usbcameratest3;
+
+import android.content.SharedPreferences;
+import android.hardware.usb.UsbDeviceConnection;
+import android.hardware.usb.UsbEndpoint;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Finds the largest EP 0x85 bulk read size the host accepts.
+ * Some kernels (Glass XE) reject large reads with "Invalid argument", so the probe starts at
+ * the known safe 4 KB and doubles until a read is rejected or 64 KB is reached, then narrows
+ * the rejected step down in multiples of 512 bytes. Only a fast error counts as a rejection, a
+ * read that ran into its timeout says nothing about the size (camera warming up, FFC pause).
+ * The result is cached per device key and kernel, later connects skip the probe. A result that
+ * was cut short by timeouts is used but not cached.
+ * Must run while the camera is streaming and its status endpoints are polled, probe reads carry
+ * real video data which is handed to a {@link DataSink} instead of being dropped.
+ */
+public class FlirOneTransferProbe {
+    private static final String TAG = "FlirOneTransferProbe";
+    private static final String KEY_PREFIX = "flir_one_transfer_size_";
+
+    public static final int SAFE_TRANSFER_SIZE = 4096;
+    public static final int MAX_TRANSFER_SIZE = 64 * 1024;
+    // UsbDeviceConnection.bulkTransfer and UsbRequest truncate to 16 KB before Android P
+    private static final int LEGACY_MAX_TRANSFER_SIZE = 16 * 1024;
+    private static final int PROBE_TIMEOUT_MS = 200;
+    private static final int PROBE_ATTEMPTS = 2;
+    private static final int STEP = 512;
+
+    // outcome of a probe read
+    private static final int ACCEPTED = 0;
+    private static final int REJECTED = 1;
+    private static final int TIMED_OUT = 2;
+
+    public interface DataSink {
+        void onProbeData(byte[] data, int length);
+    }
+
+    private final SharedPreferences prefs;
+    private final String key;
+    private int probeReads = 0;
+    private boolean conclusive;
+    private boolean fromCache;
+
+    /**
+     * @param deviceKey from USBMonitor.getDeviceKeyName()
+     */
+    public FlirOneTransferProbe(SharedPreferences prefs, String deviceKey) {
+        this.prefs = prefs;
+        this.key = KEY_PREFIX + deviceKey + "/" + System.getProperty("os.version");
+    }
+
+    /**
+     * @return the upper bound on this host, independent of the device
+     */
+    public static int getHostMaxTransferSize() {
+        return Build.VERSION.SDK_INT < 28 ? LEGACY_MAX_TRANSFER_SIZE : MAX_TRANSFER_SIZE;
+    }
+
+    /**
+     * @return the cached size, 0 if this device has not been probed on this kernel
+     */
+    public int getCachedSize() {
+        int size = prefs.getInt(key, 0);
+        return size >= SAFE_TRANSFER_SIZE && size <= getHostMaxTransferSize() ? size : 0;
+    }
+
+    /**
+     * Forgets the cached size, e.g. after a read failed with it.
+     */
+    public void invalidate() {
+        prefs.edit().remove(key).apply();
+        fromCache = false;
+    }
+
+    /**
+     * @return the cached size, or the probed one which is cached unless timeouts cut it short
+     */
+    public int resolve(UsbDeviceConnection connection, UsbEndpoint epVideo, DataSink sink) {
+        int size = getCachedSize();
+        if (size > 0) {
+            Log.d(TAG, "Using cached transfer size " + size);
+            fromCache = true;
+            return size;
+        }
+        fromCache = false;
+        size = probe(connection, epVideo, sink);
+        if (conclusive) {
+            prefs.edit().putInt(key, size).apply();
+        } else {
+            Log.w(TAG, "Probe ran into timeouts, transfer size " + size + " not cached");
+        }
+        return size;
+    }
+
+    /**
+     * @return true if the last {@link #resolve} returned the cached size, the caller should
+     * {@link #invalidate()} it if reads with that size fail
+     */
+    public boolean isFromCache() {
+        return fromCache;
+    }
+
+    /**
+     * Doubles read sizes from SAFE_TRANSFER_SIZE, then bisects the first rejected step in
+     * multiples of 512 bytes.
+     * @return the largest size a read succeeded with
+     */
+    public int probe(UsbDeviceConnection connection, UsbEndpoint epVideo, DataSink sink) {
+        final int max = getHostMaxTransferSize();
+        final byte[] buffer = new byte[max];
+        int safe = SAFE_TRANSFER_SIZE;
+        int rejected = 0;
+        probeReads = 0;
+        conclusive = true;
+
+        for (int size = SAFE_TRANSFER_SIZE * 2; size <= max; size *= 2) {
+            final int result = tryRead(connection, epVideo, buffer, size, sink);
+            if (result != ACCEPTED) {
+                conclusive = result == REJECTED;
+                rejected = size;
+                break;
+            }
+            safe = size;
+        }
+        if (conclusive && rejected > 0) {
+            Log.d(TAG, "Transfer size " + rejected + " rejected");
+            // the largest accepted size lies between safe and rejected
+            while (conclusive && rejected - safe > STEP) {
+                final int size = ((safe + rejected) / 2) & ~(STEP - 1);
+                final int result = tryRead(connection, epVideo, buffer, size, sink);
+                if (result == ACCEPTED) {
+                    safe = size;
+                } else if (result == REJECTED) {
+                    rejected = size;
+                } else {
+                    conclusive = false;
+                }
+            }
+        }
+        Log.i(TAG, "Largest safe transfer size " + safe + " after " + probeReads + " reads"
+            + (conclusive ? "" : ", cut short by timeouts"));
+        return safe;
+    }
+
+    private int tryRead(UsbDeviceConnection connection, UsbEndpoint epVideo, byte[] buffer, int size, DataSink sink) {
+        for (int i = 0; i < PROBE_ATTEMPTS; i++) {
+            probeReads++;
+            final long start = SystemClock.uptimeMillis();
+            int len = connection.bulkTransfer(epVideo, buffer, size, PROBE_TIMEOUT_MS);
+            if (len > 0) {
+                if (sink != null) {
+                    sink.onProbeData(buffer, len);
+                }
+                return ACCEPTED;
+            }
+            if (len < 0 && !isTimeout(len, SystemClock.uptimeMillis() - start, PROBE_TIMEOUT_MS)) {
+                return REJECTED;
+            }
+            // no data yet, give it a second chance before calling the probe inconclusive
+        }
+        return TIMED_OUT;
+    }
+
+    /**
+     * bulkTransfer reports timeouts and errors alike on most releases, a timeout is a failed
+     * read that took the whole timeout.
+     * @param len result of bulkTransfer
+     */
+    public static boolean isTimeout(int len, long elapsedMs, int timeoutMs) {
+        return len == -110 || (len < 0 && elapsedMs >= timeoutMs);
+    }
+
+    public int getProbeReads() {
+        return probeReads;
+    }
+}
@@ -0,0 +1,175 @@
+package com.serenegiant.usbcameratest3;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import com.serenegiant.thermal.FlirOneFrame;
+
+/**
+ * Holds the latest FLIR ONE visible JPEG and decodes it only when a consumer asks for it.
+ *
+ * {@link #offer(FlirOneFrame)} copies the JPEG slice of a pooled frame into a reused buffer,
+ * which costs a memcpy per frame and no decode. {@link #decode()} scales in the DCT domain
+ * by the largest power of two (up to 1/8) that still covers the target size, so a 1440x1080
+ * visible frame is decoded straight to 720x540 for the 640x360 prism instead of being decoded
+ * at full size and downscaled. The output bitmap is reused for every decode.
+ * Consumers must not keep the returned bitmap across decode calls.
+ * The JPEG is double buffered: decode() only swaps buffers under the lock offer() takes and
+ * decodes outside of it, so the stream thread never waits for a decode.
+ */
+public class FlirOneVisibleDecoder {
+    private static final String TAG = "FlirOneVisibleDecoder";
+    private static final int MAX_SAMPLE_SIZE = 8;   // JPEG scaled IDCT goes down to 1/8
+
+    private final int targetWidth;
+    private final int targetHeight;
+    private final BitmapFactory.Options options = new BitmapFactory.Options();
+
+    // Latest JPEG, guarded by this
+    private byte[] jpeg = new byte[64 * 1024];
+    private int jpegSize = 0;
+    private boolean dirty = false;
+    private long framesOffered = 0;
+
+    // Decode state, guarded by decodeLock
+    private final Object decodeLock = new Object();
+    private byte[] decodeBuffer = new byte[64 * 1024];
+    private Bitmap bitmap;
+    private int sourceWidth = 0;
+    private int sourceHeight = 0;
+
+    // Statistics, written under decodeLock
+    private volatile int sampleSize = 1;
+    private volatile long framesDecoded = 0;
+    private volatile long lastDecodeNanos = 0;
+
+    public FlirOneVisibleDecoder(int targetWidth, int targetHeight) {
+        if (targetWidth < 1 || targetHeight < 1) {
+            throw new IllegalArgumentException("invalid target size: " + targetWidth + "x" + targetHeight);
+        }
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;   // required for inBitmap reuse
+    }
+
+    /**
+     * Keeps the JPEG of a leased frame for a later decode. Call before releasing the frame.
+     */
+    public synchronized void offer(FlirOneFrame frame) {
+        final int size = frame.getJpegSize();
+        if (size <= 0) {
+            return;
+        }
+        if (jpeg.length < size) {
+            jpeg = new byte[size + size / 4];
+        }
+        System.arraycopy(frame.getData(), frame.getJpegOffset(), jpeg, 0, size);
+        jpegSize = size;
+        dirty = true;
+        framesOffered++;
+    }
+
+    /**
+     * @return true if a JPEG arrived since the last decode
+     */
+    public synchronized boolean hasNewFrame() {
+        return dirty;
+    }
+
+    /**
+     * Decodes the latest JPEG at the target scale, or returns the previous result if no new
+     * frame arrived since.
+     * @return the reused bitmap, null if no visible frame was received or it could not be decoded
+     */
+    public Bitmap decode() {
+        synchronized (decodeLock) {
+            final byte[] data;
+            final int size;
+            synchronized (this) {
+                if (!dirty) {
+                    return bitmap;
+                }
+                dirty = false;
+                // offer() fills the other buffer from now on
+                data = jpeg;
+                size = jpegSize;
+                jpeg = decodeBuffer;
+                decodeBuffer = data;
+            }
+            return decode(data, size);
+        }
+    }
+
+    private Bitmap decode(byte[] data, int size) {
+        final long start = System.nanoTime();
+
+        // Header only, picks the scale without decoding any pixel
+        options.inJustDecodeBounds = true;
+        options.inSampleSize = 1;
+        options.inBitmap = null;
+        BitmapFactory.decodeByteArray(data, 0, size, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            Log.w(TAG, "Visible frame is not a JPEG, " + size + " bytes");
+            return null;
+        }
+        if (options.outWidth != sourceWidth || options.outHeight != sourceHeight) {
+            sourceWidth = options.outWidth;
+            sourceHeight = options.outHeight;
+            sampleSize = selectSampleSize(sourceWidth, sourceHeight, targetWidth, targetHeight);
+            Log.i(TAG, "Visible " + sourceWidth + "x" + sourceHeight + " decoded at 1/" + sampleSize
+                + " for " + targetWidth + "x" + targetHeight);
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inBitmap = bitmap;
+        Bitmap decoded;
+        try {
+            decoded = BitmapFactory.decodeByteArray(data, 0, size, options);
+        } catch (IllegalArgumentException e) {
+            // the reused bitmap does not fit the new size, decode into a fresh one
+            options.inBitmap = null;
+            decoded = BitmapFactory.decodeByteArray(data, 0, size, options);
+        }
+        options.inBitmap = null;
+        if (decoded == null) {
+            Log.w(TAG, "Failed to decode visible frame");
+            return null;
+        }
+        bitmap = decoded;
+        framesDecoded++;
+        lastDecodeNanos = System.nanoTime() - start;
+        return bitmap;
+    }
+
+    /**
+     * @return largest power of two up to 1/8 whose output still covers the target
+     */
+    static int selectSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sample = 1;
+        while (sample < MAX_SAMPLE_SIZE
+            && width / (sample * 2) >= targetWidth
+            && height / (sample * 2) >= targetHeight) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public synchronized long getFramesOffered() {
+        return framesOffered;
+    }
+
+    public long getFramesDecoded() {
+        return framesDecoded;
+    }
+
+    public long getLastDecodeNanos() {
+        return lastDecodeNanos;
+    }
+}
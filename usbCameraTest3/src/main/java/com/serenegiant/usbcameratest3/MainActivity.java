@@ -37,6 +37,7 @@ import android.location.LocationManager;
 import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.KeyEvent;
 import android.view.MotionEvent;
@@ -49,9 +50,11 @@ import java.util.List;
 import com.flir.boson.glass.R;
 import com.google.android.glass.touchpad.Gesture;
 import com.google.android.glass.touchpad.GestureDetector;
+import com.serenegiant.thermal.FlirOneFrame;
+import com.serenegiant.thermal.ThermalFrameProcessor;
 import com.serenegiant.usb.CameraDialog;
 import com.serenegiant.usb.USBMonitor.OnDeviceConnectListener;
-import com.serenegiant.usb.IFrameCallback;
+import com.serenegiant.usb.ILeasedFrameCallback;
 import com.serenegiant.usb.USBMonitor;
 import com.serenegiant.usb.UVCCamera;
 import com.serenegiant.widget.UVCCameraTextureView;
@@ -63,8 +66,6 @@ import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public final class MainActivity extends Activity implements CameraDialog.CameraDialogParent {
     private static final String TAG = "MainActivity";
@@ -76,16 +77,25 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
 
     private static final int MENU_REQUEST_CODE = 100;
 
+    // FLIR ONE EP 0x85 read queue - keeps the musb-hdrc pipe busy between reads
+    private static final int FLIR_ONE_ASYNC_QUEUE_DEPTH = 8;
+    private static final int FLIR_ONE_TRANSFER_SIZE = 4096; // until the transfer size probe has run
+    private static final String FLIR_ONE_PREFS = "flir_one";
+    private static final boolean FLIR_ONE_NATIVE_STREAMING = true; // falls back to Java reads on failure
+
     // Thermal imaging constants
     private boolean mThermalMode = false;
-    private int mThermalPalette = 0; // 0=Iron, 1=Rainbow, 2=Gray
-    private static final int THERMAL_MIN_TEMP = -40; // Celsius
-    private static final int THERMAL_MAX_TEMP = 400; // Celsius
-
-    // Raw thermal data processing
-    private volatile byte[] mLatestThermalFrame = null;
-    private final Object mThermalLock = new Object();
-    private boolean mRawDataEnabled = false;
+    private int mThermalPalette = ThermalFrameProcessor.PALETTE_IRON; // same values as UVCCamera.THERMAL_PALETTE_XXX
+    private int mAgcMode = ThermalFrameProcessor.AGC_LINEAR;
+
+    // Raw thermal data processing, newest frame handed from ingest to the renderer without copies
+    private final ThermalFrameMailbox mThermalMailbox = new ThermalFrameMailbox();
+    private byte[] mRenderThermalBuffer;    // render thread only, copy of a leased native frame
+    private final ThermalFrameProcessor mThermalProcessor = new ThermalFrameProcessor();    // render thread only
+    private int[] mRenderThermalPixels;     // render thread only, ARGB output of mThermalProcessor
+    private final Object mThermalLock = new Object();   // guards the UVC frame dimensions below
+    private volatile boolean mRawDataEnabled = false;
+    private volatile boolean mNativeThermalPreview = false;    // Y16 preview colorized by UVCPreview
     private int mThermalFrameWidth = 640;
     private int mThermalFrameHeight = 512;
 
@@ -95,6 +105,8 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
     private USBMonitor mUSBMonitor;
     private UVCCamera mUVCCamera;
     private FlirOneDriver mFlirOneDriver; // FLIR ONE specific driver (fixed implementation)
+    // Latest FLIR ONE visible JPEG, decoded at prism scale only when captured
+    private final FlirOneVisibleDecoder mVisibleDecoder = new FlirOneVisibleDecoder(GLASS_WIDTH, GLASS_HEIGHT);
     private UVCCameraTextureView mUVCCameraView;
     private Surface mPreviewSurface;
     private boolean mIsRecording = false;
@@ -132,8 +144,8 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
         public void onProviderDisabled(String provider) {}
     };
 
-    // Background processing
-    private ExecutorService mThermalProcessingExecutor;
+    // Background processing, overlay renders coalesced onto one render thread
+    private ThermalRenderScheduler mRenderScheduler;
 
     @Override
     protected void onCreate(final Bundle savedInstanceState) {
@@ -160,8 +172,19 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
         // Create capture directory
         createCaptureDirectory();
 
+        // Raw samples straight to colors, the scene range of a thermal core drifts slowly,
+        // so render each frame in one pass with the contrast window of the frames before it
+        mThermalProcessor.setFusedLutEnabled(true);
+        mThermalProcessor.setTemporalAgc(true);
+
         // Initialize background processing
-        mThermalProcessingExecutor = Executors.newSingleThreadExecutor();
+        mRenderScheduler = new ThermalRenderScheduler(new Runnable() {
+            @Override
+            public void run() {
+                renderThermalOverlay();
+            }
+        });
+        mRenderScheduler.setDisplayRefreshRate(getWindowManager().getDefaultDisplay().getRefreshRate());
     }
 
     @Override
@@ -189,6 +212,7 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
             mThermalMode = data.getBooleanExtra(MenuActivity.EXTRA_THERMAL_MODE, mThermalMode);
             mGpsEnabled = data.getBooleanExtra(MenuActivity.EXTRA_GPS_ENABLED, mGpsEnabled);
             mThermalPalette = data.getIntExtra(MenuActivity.EXTRA_PALETTE, mThermalPalette);
+            mAgcMode = data.getIntExtra(MenuActivity.EXTRA_AGC_MODE, mAgcMode);
 
             if (data.getBooleanExtra(MenuActivity.EXTRA_TOGGLE_RECORDING, false)) {
                 toggleRecording();
@@ -309,6 +333,7 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
         intent.putExtra(MenuActivity.EXTRA_THERMAL_MODE, mThermalMode);
         intent.putExtra(MenuActivity.EXTRA_GPS_ENABLED, mGpsEnabled);
         intent.putExtra(MenuActivity.EXTRA_PALETTE, mThermalPalette);
+        intent.putExtra(MenuActivity.EXTRA_AGC_MODE, mAgcMode);
         startActivityForResult(intent, MENU_REQUEST_CODE);
     }
 
@@ -371,9 +396,9 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
             mUSBMonitor.destroy();
             mUSBMonitor = null;
         }
-        if (mThermalProcessingExecutor != null) {
-            mThermalProcessingExecutor.shutdown();
-            mThermalProcessingExecutor = null;
+        if (mRenderScheduler != null) {
+            mRenderScheduler.shutdown();
+            mRenderScheduler = null;
         }
         if (mUSBPowerManager != null) {
             mUSBPowerManager.cleanup();
@@ -405,37 +430,21 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
     }
 
     private float readCenterTemperatureFromThermalData() {
-        synchronized (mThermalLock) {
-            if (mLatestThermalFrame == null || !mRawDataEnabled) {
+        synchronized (mThermalMailbox) {
+            ThermalFrameMailbox.Frame frame = mThermalMailbox.latest();
+            if (frame == null || !mRawDataEnabled) {
                 // Fallback to simulated data if no real thermal data available
                 return 20.0f + (float)(Math.random() * 60.0f);
             }
 
             try {
                 // FLIR Boson Y16 format: 16-bit values, little endian
-                // Use actual frame dimensions
-                int width = mThermalFrameWidth;
-                int height = mThermalFrameHeight;
-                int centerX = width / 2;
-                int centerY = height / 2;
-
-                // Each pixel is 2 bytes (16-bit)
-                int pixelOffset = (centerY * width + centerX) * 2;
-
-                if (pixelOffset + 1 < mLatestThermalFrame.length) {
-                    // Read 16-bit value (little endian) from byte array
-                    short rawValue = (short) ((mLatestThermalFrame[pixelOffset] & 0xFF) |
-                                             ((mLatestThermalFrame[pixelOffset + 1] & 0xFF) << 8));
-
-                    // Improved temperature estimation assuming T-Linear format
-                    // T-Linear format: raw value is proportional to absolute temperature
-                    // Common format for FLIR cores is centi-Kelvin (Kelvin * 100)
-                    // NOTE: This is still an estimation - true accuracy requires SDK calibration
-                    float tempInKelvin = (rawValue & 0xFFFF) / 100.0f;
-                    float temperature = tempInKelvin - 273.15f;
-
-                    // Clamp to reasonable thermal imaging range as safety measure
-                    return Math.max(THERMAL_MIN_TEMP, Math.min(THERMAL_MAX_TEMP, temperature));
+                int width = frame.getWidth();
+                int height = frame.getHeight();
+                int centerIndex = (height / 2) * width + width / 2;
+
+                if (centerIndex * 2 + 1 < frame.getSize()) {
+                    return ThermalFrameProcessor.rawToCelsius(frame.getPixel(centerIndex));
                 }
             } catch (Exception e) {
                 Log.e(TAG, "Error reading thermal data", e);
@@ -453,12 +462,26 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
 
     private void cyclePalette() {
         if (mThermalMode) {
-            mThermalPalette = (mThermalPalette + 1) % 3; // Cycle through palettes
+            mThermalPalette = (mThermalPalette + 1) % ThermalFrameProcessor.PALETTE_NUM;
             updateUiForThermalMode();
         }
     }
 
+    /**
+     * Palette and contrast of the natively drawn Y16 preview, gray outside thermal mode.
+     * UVCCamera's AGC values are the same as ThermalFrameProcessor's.
+     */
+    private void applyNativeThermalSettings() {
+        synchronized (mSync) {
+            if (mUVCCamera != null && mNativeThermalPreview) {
+                mUVCCamera.setThermalPalette(mThermalMode ? mThermalPalette : UVCCamera.THERMAL_PALETTE_GRAY);
+                mUVCCamera.setThermalAgcMode(mAgcMode);
+            }
+        }
+    }
+
     private void updateUiForThermalMode() {
+        applyNativeThermalSettings();
         if (mThermalMode) {
             enableRawThermalData();
         } else {
@@ -496,22 +519,28 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
         synchronized (mSync) {
             if (mUVCCamera != null) {
                 try {
-                    // Set frame callback to receive raw Y16 thermal data
-                    mUVCCamera.setFrameCallback(new IFrameCallback() {
+                    // Set frame callback to receive raw Y16 thermal data, leased straight from the
+                    // native frame pool and returned by the mailbox once superseded
+                    final UVCCamera camera = mUVCCamera;
+                    final ThermalFrameMailbox.LeaseReleaser releaser = new ThermalFrameMailbox.LeaseReleaser() {
+                        @Override
+                        public void releaseFrame(long handle) {
+                            camera.releaseFrame(handle);
+                        }
+                    };
+                    mUVCCamera.setLeasedFrameCallback(new ILeasedFrameCallback() {
                         @Override
-                        public void onFrame(ByteBuffer frame) {
+                        public void onFrame(ByteBuffer frame, long handle) {
+                            int width, height;
                             synchronized (mThermalLock) {
-                                // Copy buffer data to prevent race conditions
-                                int frameSize = frame.remaining();
-                                if (mLatestThermalFrame == null || mLatestThermalFrame.length != frameSize) {
-                                    mLatestThermalFrame = new byte[frameSize];
-                                }
-                                frame.get(mLatestThermalFrame);
-                                frame.rewind(); // Reset position for potential reuse
-                                mRawDataEnabled = true;
+                                width = mThermalFrameWidth;
+                                height = mThermalFrameHeight;
                             }
+                            mThermalMailbox.publishLeased(frame, handle, releaser,
+                                width, height, SystemClock.elapsedRealtimeNanos());
+                            mRawDataEnabled = true;
                         }
-                    }, UVCCamera.PIXEL_FORMAT_RAW);
+                    }, UVCCamera.PIXEL_FORMAT_Y16);
 
                     if (DEBUG) Log.v(TAG, "Raw thermal data enabled");
                 } catch (Exception e) {
@@ -525,30 +554,34 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
         synchronized (mSync) {
             if (mUVCCamera != null) {
                 try {
-                    mUVCCamera.setFrameCallback(null, 0);
+                    // returns once a callback in progress has finished, nothing is published after it
+                    mUVCCamera.setLeasedFrameCallback(null, UVCCamera.PIXEL_FORMAT_Y16);
                     if (DEBUG) Log.v(TAG, "Raw thermal data disabled");
                 } catch (Exception e) {
                     Log.e(TAG, "Error disabling raw thermal data", e);
                 }
             }
         }
-        synchronized (mThermalLock) {
-            mLatestThermalFrame = null;
-            mRawDataEnabled = false;
-        }
+        mRawDataEnabled = false;
+        mThermalMailbox.clear();
     }
 
     private String getPaletteName() {
         switch (mThermalPalette) {
-            case 0: return "Iron";
-            case 1: return "Rainbow";
-            case 2: return "Gray";
+            case ThermalFrameProcessor.PALETTE_IRON: return "Iron";
+            case ThermalFrameProcessor.PALETTE_RAINBOW: return "Rainbow";
+            case ThermalFrameProcessor.PALETTE_GRAY: return "Gray";
             default: return "Unknown";
         }
     }
 
+    /**
+     * Requests an overlay render. Bursts of frames and UI changes collapse into one render
+     * that picks up the newest frame and state.
+     */
     private void generateThermalOverlayAsync() {
-        if (mThermalProcessingExecutor == null || mThermalProcessingExecutor.isShutdown()) {
+        final ThermalRenderScheduler scheduler = mRenderScheduler;
+        if (scheduler == null || scheduler.isShutdown()) {
             return;
         }
 
@@ -558,69 +591,84 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
             return;
         }
 
-        // Copy thermal data for background processing to avoid race conditions
-        final byte[] thermalDataCopy;
-        final int width, height, palette;
-
-        synchronized (mThermalLock) {
-            if (mLatestThermalFrame == null || !mRawDataEnabled) {
-                // If no thermal data, create a blank bitmap for status text
-                Bitmap emptyBitmap = Bitmap.createBitmap(GLASS_WIDTH, GLASS_HEIGHT, Bitmap.Config.ARGB_8888);
-                Canvas canvas = new Canvas(emptyBitmap);
-                drawStatusText(canvas, mStatusText);
-                runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        mThermalOverlay.setImageBitmap(emptyBitmap);
-                        mThermalOverlay.setVisibility(View.VISIBLE);
-                    }
-                });
-                return;
-            }
+        scheduler.requestRender();
+    }
 
-            thermalDataCopy = mLatestThermalFrame.clone();
-            width = mThermalFrameWidth;
-            height = mThermalFrameHeight;
-            palette = mThermalPalette;
+    /**
+     * Renders the overlay from the newest thermal frame, on the render thread.
+     */
+    private void renderThermalOverlay() {
+        if (mThermalMailbox.isEmpty() || !mRawDataEnabled) {
+            // If no thermal data, create a blank bitmap for status text
+            final Bitmap emptyBitmap = Bitmap.createBitmap(GLASS_WIDTH, GLASS_HEIGHT, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(emptyBitmap);
+            drawStatusText(canvas, mStatusText);
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    mThermalOverlay.setImageBitmap(emptyBitmap);
+                    mThermalOverlay.setVisibility(View.VISIBLE);
+                }
+            });
+            return;
         }
 
-        // Process thermal data in background thread
-        mThermalProcessingExecutor.execute(new Runnable() {
-            @Override
-            public void run() {
-                try {
+        try {
+            final int palette = mThermalPalette;
+            final int agcMode = mAgcMode;
+            final Bitmap thermalBitmap;
+            if (mNativeThermalPreview) {
+                // the image itself is already on the preview surface, only draw the overlay
+                thermalBitmap = Bitmap.createBitmap(GLASS_WIDTH, GLASS_HEIGHT, Bitmap.Config.ARGB_8888);
+            } else {
+                synchronized (mThermalMailbox) {
+                    ThermalFrameMailbox.Frame frame = mThermalMailbox.latest();
+                    if (frame == null) {
+                        return;
+                    }
                     // Performance optimization: Get optimal resolution based on current mode
-                    int[] optimalSize = getOptimalThermalResolution(width, height);
+                    int[] optimalSize = getOptimalThermalResolution(frame.getWidth(), frame.getHeight());
                     int optimalWidth = optimalSize[0];
                     int optimalHeight = optimalSize[1];
 
-                    // Create thermal visualization bitmap with auto-contrast
-                    Bitmap thermalBitmap = createThermalBitmapWithAutoContrast(thermalDataCopy, optimalWidth, optimalHeight, palette);
-
-                    if (thermalBitmap != null) {
-                        Canvas canvas = new Canvas(thermalBitmap);
-                        drawCrosshair(canvas);
-                        drawStatusText(canvas, mStatusText);
-                        if (mTemperatureText != null) {
-                            drawTemperatureText(canvas, mTemperatureText);
+                    byte[] data = frame.getData();
+                    if (frame.isLeased()) {
+                        // one bulk copy out of the native frame, only for frames that are rendered
+                        if (mRenderThermalBuffer == null || mRenderThermalBuffer.length < frame.getSize()) {
+                            mRenderThermalBuffer = new byte[frame.getSize()];
                         }
-
-                        // Update UI on main thread
-                        runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                if (mThermalMode) { // Check if still in thermal mode
-                                    mThermalOverlay.setImageBitmap(thermalBitmap);
-                                    mThermalOverlay.setVisibility(View.VISIBLE);
-                                }
-                            }
-                        });
+                        frame.copyTo(mRenderThermalBuffer);
+                        data = mRenderThermalBuffer;
                     }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error generating thermal overlay", e);
+
+                    // Create thermal visualization bitmap with auto-contrast
+                    thermalBitmap = createThermalBitmapWithAutoContrast(data, frame.getWidth(), frame.getHeight(),
+                        optimalWidth, optimalHeight, palette, agcMode);
                 }
             }
-        });
+
+            if (thermalBitmap != null) {
+                Canvas canvas = new Canvas(thermalBitmap);
+                drawCrosshair(canvas);
+                drawStatusText(canvas, mStatusText);
+                if (mTemperatureText != null) {
+                    drawTemperatureText(canvas, mTemperatureText);
+                }
+
+                // Update UI on main thread
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mThermalMode) { // Check if still in thermal mode
+                            mThermalOverlay.setImageBitmap(thermalBitmap);
+                            mThermalOverlay.setVisibility(View.VISIBLE);
+                        }
+                    }
+                });
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error generating thermal overlay", e);
+        }
     }
 
     /**
@@ -681,49 +729,21 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
         canvas.drawText(text, canvas.getWidth() / 2, canvas.getHeight() / 2, paint);
     }
 
-    private Bitmap createThermalBitmapWithAutoContrast(byte[] thermalData, int width, int height, int palette) {
+    private Bitmap createThermalBitmapWithAutoContrast(byte[] thermalData, int width, int height,
+            int outWidth, int outHeight, int palette, int agcMode) {
         try {
-            int expectedSize = width * height * 2; // 2 bytes per pixel for Y16
-            if (thermalData.length < expectedSize) {
-                Log.e(TAG, "Thermal data buffer too small: " + thermalData.length + " < " + expectedSize);
-                return null;
+            int pixelCount = outWidth * outHeight;
+            if (mRenderThermalPixels == null || mRenderThermalPixels.length < pixelCount) {
+                mRenderThermalPixels = new int[pixelCount];
             }
-
-            // First pass: find min/max values for auto-contrast
-            int minValue = Integer.MAX_VALUE;
-            int maxValue = Integer.MIN_VALUE;
-            int pixelCount = width * height;
-
-            for (int i = 0; i < pixelCount; i++) {
-                int offset = i * 2;
-                // Read 16-bit value (little endian) from byte array
-                int rawValue = (thermalData[offset] & 0xFF) | ((thermalData[offset + 1] & 0xFF) << 8);
-                minValue = Math.min(minValue, rawValue);
-                maxValue = Math.max(maxValue, rawValue);
-            }
-
-            // Avoid division by zero
-            int range = Math.max(maxValue - minValue, 1);
-
-            // Create bitmap with auto-scaled values
-            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-            int[] pixels = new int[pixelCount];
-
-            for (int i = 0; i < pixelCount; i++) {
-                int offset = i * 2;
-                // Read 16-bit value (little endian) from byte array
-                int rawValue = (thermalData[offset] & 0xFF) | ((thermalData[offset + 1] & 0xFF) << 8);
-
-                // Auto-contrast: scale to 0-255 based on scene range
-                int scaledValue = ((rawValue - minValue) * 255) / range;
-                scaledValue = Math.max(0, Math.min(255, scaledValue));
-
-                // Apply thermal color palette
-                int color = applyThermalPaletteScaled(scaledValue, palette);
-                pixels[i] = color;
+            mThermalProcessor.setPalette(palette);
+            if (mThermalProcessor.getAgcMode() != agcMode) {
+                mThermalProcessor.setAgcMode(agcMode);
             }
+            mThermalProcessor.process(thermalData, width, height, mRenderThermalPixels, outWidth, outHeight);
 
-            bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+            Bitmap bitmap = Bitmap.createBitmap(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+            bitmap.setPixels(mRenderThermalPixels, 0, outWidth, 0, 0, outWidth, outHeight);
             return bitmap;
         } catch (Exception e) {
             Log.e(TAG, "Error creating thermal bitmap", e);
@@ -731,66 +751,18 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
         }
     }
 
-    // Legacy method for backward compatibility - now uses new method
-    private Bitmap createThermalBitmap(ByteBuffer thermalData) {
-        // Convert ByteBuffer to byte array and use new method
-        synchronized (mThermalLock) {
-            byte[] dataArray = new byte[thermalData.remaining()];
-            thermalData.get(dataArray);
-            thermalData.rewind();
-            return createThermalBitmapWithAutoContrast(dataArray, mThermalFrameWidth, mThermalFrameHeight, mThermalPalette);
-        }
-    }
-
-    private int applyThermalPaletteScaled(int scaledValue, int palette) {
-        // Value is already scaled to 0-255 by auto-contrast
-        switch (palette) {
-            case 0: // Iron palette
-                return applyIronPalette(scaledValue);
-            case 1: // Rainbow palette
-                return applyRainbowPalette(scaledValue);
-            case 2: // Grayscale palette
-                return Color.argb(255, scaledValue, scaledValue, scaledValue);
-            default:
-                return Color.argb(255, scaledValue, scaledValue, scaledValue);
-        }
-    }
-
-    // Legacy method for backward compatibility
-    private int applyThermalPalette(int thermalValue, int palette) {
-        // Normalize thermal value (0-65535) to 0-255
-        int normalized = (thermalValue * 255) / 65535;
-        return applyThermalPaletteScaled(normalized, palette);
-    }
-
-    private int applyIronPalette(int value) {
-        // Iron color palette - cold=black/blue, hot=red/yellow/white
-        int r, g, b;
-        if (value < 85) {
-            r = 0;
-            g = 0;
-            b = value * 3;
-        } else if (value < 170) {
-            r = (value - 85) * 3;
-            g = 0;
-            b = 255 - ((value - 85) * 3);
-        } else {
-            r = 255;
-            g = (value - 170) * 3;
-            b = 0;
-        }
-        return Color.argb(255, Math.min(255, r), Math.min(255, g), Math.min(255, b));
-    }
-
-    private int applyRainbowPalette(int value) {
-        // Rainbow color palette
-        float hue = (value / 255.0f) * 300.0f; // Hue from 0 to 300 (blue to red)
-        float[] hsv = {hue, 1.0f, 1.0f};
-        return Color.HSVToColor(hsv);
-    }
-
     private void captureImage() {
         synchronized (mSync) {
+            if (mFlirOneDriver != null) {
+                // FLIR ONE has no preview surface, save its visible camera frame
+                Bitmap bitmap = mVisibleDecoder.decode();
+                if (bitmap != null) {
+                    saveCapturedImage(bitmap);
+                } else {
+                    Toast.makeText(this, "No visible frame yet", Toast.LENGTH_SHORT).show();
+                }
+                return;
+            }
             if (mUVCCamera == null) {
                 Toast.makeText(this, "Camera not connected", Toast.LENGTH_SHORT).show();
                 return;
@@ -847,8 +819,9 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
     }
 
     private void saveRadiometricData(String baseFilename, long timestamp) {
-        synchronized (mThermalLock) {
-            if (mLatestThermalFrame == null || !mRawDataEnabled) {
+        synchronized (mThermalMailbox) {
+            ThermalFrameMailbox.Frame frame = mThermalMailbox.latest();
+            if (frame == null || !mRawDataEnabled) {
                 return;
             }
 
@@ -859,9 +832,9 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
                 File rawFile = new File(dir, rawFilename);
 
                 FileOutputStream out = new FileOutputStream(rawFile);
-                out.write(mLatestThermalFrame); // mLatestThermalFrame is now byte[]
+                frame.writeTo(out);
                 out.close();
-                int thermalDataSize = mLatestThermalFrame.length;
+                int thermalDataSize = frame.getSize();
 
                 // Save metadata
                 String metaFilename = baseFilename + "_meta.txt";
@@ -1012,20 +985,69 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
                     releaseCamera();
                     try {
                         mFlirOneDriver = new FlirOneDriver(device);
+                        mFlirOneDriver.setInitTimingStore(getSharedPreferences(FLIR_ONE_PREFS, MODE_PRIVATE));
                         if (mFlirOneDriver.open(ctrlBlock.getConnection())) {
-                            if (DEBUG) Log.i(TAG, "FLIR ONE driver opened successfully");
+                            if (DEBUG) Log.i(TAG, "FLIR ONE driver opened in " + mFlirOneDriver.getInitTimings().getTotalLatencyMs() + "ms");
+                            mFlirOneDriver.setAsyncReadQueue(FLIR_ONE_ASYNC_QUEUE_DEPTH, FLIR_ONE_TRANSFER_SIZE);
+                            mFlirOneDriver.setTransferSizeProbe(new FlirOneTransferProbe(
+                                getSharedPreferences(FLIR_ONE_PREFS, MODE_PRIVATE), USBMonitor.getDeviceKeyName(device)));
+                            if (FLIR_ONE_NATIVE_STREAMING) {
+                                mFlirOneDriver.setNativeStreaming(ctrlBlock, FLIR_ONE_ASYNC_QUEUE_DEPTH, FLIR_ONE_TRANSFER_SIZE);
+                            }
+
+                            mFlirOneDriver.setStatusListener(new FlirOneStatusParser.Listener() {
+                                @Override
+                                public void onShutterStateChanged(boolean closed) {
+                                    if (DEBUG) Log.v(TAG, "FLIR ONE shutter closed=" + closed);
+                                }
+
+                                @Override
+                                public void onFfcStateChanged(final boolean inProgress) {
+                                    runOnUiThread(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            updateStatusText(inProgress ? "FLIR ONE - FFC" : "FLIR ONE Active - Streaming");
+                                        }
+                                    });
+                                }
+
+                                @Override
+                                public void onBatteryChanged(int percent, float voltage) {
+                                    if (DEBUG) Log.v(TAG, "FLIR ONE battery " + percent + "% " + voltage + "V");
+                                }
+                            });
+                            mFlirOneDriver.getWatchdog().setListener(new FlirOneStreamWatchdog.Listener() {
+                                @Override
+                                public void onStreamStalled(final long gapMs) {
+                                    runOnUiThread(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            updateStatusText("FLIR ONE stalled - restarting");
+                                        }
+                                    });
+                                }
 
-                            // Start streaming with callback
-                            mFlirOneDriver.startStream(new FlirOneDriver.FrameCallback() {
                                 @Override
-                                public void onThermalFrame(byte[] thermalData, int width, int height) {
-                                    processThermalFrame(thermalData, width, height);
+                                public void onStreamRecovered(final long recoveryMs, final int restarts) {
+                                    if (DEBUG) Log.i(TAG, "FLIR ONE recovered in " + recoveryMs + "ms, restarts=" + restarts);
+                                    runOnUiThread(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            updateStatusText("FLIR ONE Active - recovered in " + recoveryMs + "ms");
+                                        }
+                                    });
                                 }
+                            });
 
+                            // Start streaming with callback
+                            mFlirOneDriver.startStream(new FlirOneDriver.PooledFrameCallback() {
                                 @Override
-                                public void onVisibleFrame(byte[] jpegData) {
-                                    // Process visible light image if needed
-                                    if (DEBUG) Log.d(TAG, "Received visible frame: " + jpegData.length + " bytes");
+                                public void onFrame(FlirOneFrame frame) {
+                                    try {
+                                        processThermalFrame(frame);
+                                    } finally {
+                                        frame.release();
+                                    }
                                 }
 
                                 @Override
@@ -1062,10 +1084,10 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
                         if (mUVCCameraView != null) {
                             mUVCCameraView.onResume();
                             mPreviewSurface = mUVCCameraView.getSurface();
-                            mUVCCamera.setPreviewSize(GLASS_WIDTH, GLASS_HEIGHT);
 
                             // Store actual thermal frame dimensions for processing
                             // These may be different from display dimensions
+                            final int thermalWidth, thermalHeight;
                             synchronized (mThermalLock) {
                                 // Check actual supported sizes to determine thermal frame dimensions
                                 String sizeList = mUVCCamera.getSupportedSizeList().toString();
@@ -1076,7 +1098,20 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
                                     mThermalFrameWidth = 640;
                                     mThermalFrameHeight = 512;
                                 }
+                                thermalWidth = mThermalFrameWidth;
+                                thermalHeight = mThermalFrameHeight;
+                            }
+
+                            // Y16 is colorized natively into the preview surface, no Java per-pixel work
+                            try {
+                                mUVCCamera.setPreviewSize(thermalWidth, thermalHeight, UVCCamera.FRAME_FORMAT_Y16);
+                                mNativeThermalPreview = true;
+                            } catch (final IllegalArgumentException e) {
+                                Log.w(TAG, "Y16 not available, using default preview format");
+                                mUVCCamera.setPreviewSize(GLASS_WIDTH, GLASS_HEIGHT);
+                                mNativeThermalPreview = false;
                             }
+                            applyNativeThermalSettings();
 
                             mUVCCamera.setPreviewDisplay(mPreviewSurface);
                             mUVCCamera.startPreview();
@@ -1113,12 +1148,7 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
                         if (DEBUG) Log.i(TAG, "Recording stopped due to USB disconnection");
                     }
 
-                    // Clear thermal data
-                    synchronized (mThermalLock) {
-                        mLatestThermalFrame = null;
-                        mRawDataEnabled = false;
-                    }
-
+                    // also clears the thermal data
                     releaseCamera();
                 }
             }
@@ -1183,6 +1213,11 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
             }
             if (mUVCCamera != null) {
                 try {
+                    // stop leasing and hand every lease back while the native frames still exist,
+                    // destroy() frees frames that are still leased
+                    mUVCCamera.setLeasedFrameCallback(null, UVCCamera.PIXEL_FORMAT_Y16);
+                    mRawDataEnabled = false;
+                    mThermalMailbox.clear();
                     mUVCCamera.close();
                     mUVCCamera.destroy();
                 } catch (final Exception e) {
@@ -1190,6 +1225,10 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
                 }
                 mUVCCamera = null;
             }
+            // no writer is left, drop whatever was published while shutting down
+            mRawDataEnabled = false;
+            mThermalMailbox.clear();
+            mNativeThermalPreview = false;
             if (mUVCCameraView != null) {
                 mUVCCameraView.onPause();
             }
@@ -1200,14 +1239,22 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
         }
     }
 
-    private void processThermalFrame(byte[] thermalData, int width, int height) {
-        // Convert 16-bit thermal data to temperature values
-        synchronized (mThermalLock) {
-            mLatestThermalFrame = thermalData;
-            mThermalFrameWidth = width;
-            mThermalFrameHeight = height;
-            mRawDataEnabled = true;
+    private void processThermalFrame(FlirOneFrame frame) {
+        // Visible camera is unaffected by FFC, keep its JPEG for lazy decoding
+        mVisibleDecoder.offer(frame);
+        if (frame.getThermalSize() <= 0) {
+            return;
+        }
+        if (frame.isImageUnstable()) {
+            // FFC or closed shutter: keep the last good frame for display, AGC and captures
+            return;
         }
+        // Unpack the pooled frame into the mailbox's back buffer, dropping row padding
+        ThermalFrameMailbox.Frame slot = mThermalMailbox.beginWrite(
+            frame.getThermalWidth(), frame.getThermalHeight(), frame.getDenseThermalSize());
+        frame.copyThermalLittleEndian(slot.getData());
+        mThermalMailbox.publish(frame.getTimestampNanos());
+        mRawDataEnabled = true;
 
         // Generate thermal overlay
         generateThermalOverlayAsync();
@@ -1293,7 +1340,10 @@ public final class MainActivity extends Activity implements CameraDialog.CameraD
 
         // Apply frame rate optimization to thermal processing
         // This reduces CPU/GPU load by processing fewer frames
-        if (mThermalProcessingExecutor != null && !reason.isEmpty()) {
+        if (mRenderScheduler != null) {
+            mRenderScheduler.setTargetFps(targetFps);
+        }
+        if (mRenderScheduler != null && !reason.isEmpty()) {
             showToast("Frame rate: " + targetFps + "fps (" + reason + ")");
         }
     }
@@ -11,6 +11,7 @@ import android.widget.AdapterView;
 import com.google.android.glass.widget.CardBuilder;
 import com.google.android.glass.widget.CardScrollAdapter;
 import com.google.android.glass.widget.CardScrollView;
+import com.serenegiant.thermal.ThermalFrameProcessor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -20,6 +21,7 @@ public class MenuActivity extends Activity {
     public static final String EXTRA_THERMAL_MODE = "thermal_mode";
     public static final String EXTRA_GPS_ENABLED = "gps_enabled";
     public static final String EXTRA_PALETTE = "palette";
+    public static final String EXTRA_AGC_MODE = "agc_mode";
     public static final String EXTRA_TOGGLE_RECORDING = "toggle_recording";
 
     private CardScrollView mCardScroller;
@@ -28,6 +30,7 @@ public class MenuActivity extends Activity {
     private boolean mThermalMode;
     private boolean mGpsEnabled;
     private int mPalette;
+    private int mAgcMode;
 
     @Override
     protected void onCreate(Bundle bundle) {
@@ -37,6 +40,7 @@ public class MenuActivity extends Activity {
         mThermalMode = intent.getBooleanExtra(EXTRA_THERMAL_MODE, false);
         mGpsEnabled = intent.getBooleanExtra(EXTRA_GPS_ENABLED, true);
         mPalette = intent.getIntExtra(EXTRA_PALETTE, 0);
+        mAgcMode = intent.getIntExtra(EXTRA_AGC_MODE, ThermalFrameProcessor.AGC_LINEAR);
 
         mAdapter = new MenuCardAdapter(this, createCards());
         mCardScroller = new CardScrollView(this);
@@ -56,9 +60,13 @@ public class MenuActivity extends Activity {
                         resultIntent.putExtra(EXTRA_PALETTE, nextPalette);
                         break;
                     case 2:
-                        resultIntent.putExtra(EXTRA_GPS_ENABLED, !mGpsEnabled);
+                        resultIntent.putExtra(EXTRA_AGC_MODE, mAgcMode == ThermalFrameProcessor.AGC_LINEAR ?
+                            ThermalFrameProcessor.AGC_PLATEAU : ThermalFrameProcessor.AGC_LINEAR);
                         break;
                     case 3:
+                        resultIntent.putExtra(EXTRA_GPS_ENABLED, !mGpsEnabled);
+                        break;
+                    case 4:
                         resultIntent.putExtra(EXTRA_TOGGLE_RECORDING, true);
                         break;
                 }
@@ -78,6 +86,10 @@ public class MenuActivity extends Activity {
                 .setText("Palette")
                 .setFootnote(getPaletteName(mPalette)));
 
+        cards.add(new CardBuilder(this, CardBuilder.Layout.TEXT)
+                .setText("Contrast")
+                .setFootnote(mAgcMode == ThermalFrameProcessor.AGC_PLATEAU ? "Equalized" : "Linear"));
+
         cards.add(new CardBuilder(this, CardBuilder.Layout.TEXT)
                 .setText("GPS")
                 .setFootnote(mGpsEnabled ? "On" : "Off"));
@@ -0,0 +1,232 @@
+package com.serenegiant.usbcameratest3;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latest-wins handoff of thermal frames from the ingest thread to the renderer, as a triple buffer.
+ *
+ * The writer fills its back slot and {@link #publish(long)} swaps it with the ready slot in one
+ * atomic step, so ingest never waits for the renderer. A frame that is still unread when the
+ * next one is published is dropped right there. Readers call {@link #latest()}, which takes the
+ * ready slot only if something new was published, and always get the newest frame without a copy.
+ *
+ * Frames can also be leased native buffers ({@link #publishLeased}), then nothing is copied at
+ * ingest at all. A lease goes back through its {@link LeaseReleaser} as soon as the writer gets
+ * the slot back, i.e. once it was dropped or superseded by a newer frame the reader took.
+ *
+ * One writer thread. Readers share the front slot and must hold this mailbox's monitor while
+ * they use it, e.g. synchronized (mailbox) { Frame f = mailbox.latest(); ... }. The writer
+ * never takes that monitor.
+ */
+public class ThermalFrameMailbox {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;     // the ready slot holds a frame no reader has taken yet
+
+    public interface LeaseReleaser {
+        void releaseFrame(long handle);
+    }
+
+    public static final class Frame {
+        private byte[] data = new byte[0];
+        private int size;
+        private int width;
+        private int height;
+        private long timestampNanos;
+        // set while the frame is a leased native buffer instead of data
+        private ByteBuffer leased;
+        private long leaseHandle;
+        private LeaseReleaser releaser;
+
+        /**
+         * @return backing buffer, may be longer than {@link #getSize()}. Not valid for leased frames,
+         * use {@link #copyTo(byte[])} or {@link #getPixel(int)} instead
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        public boolean isLeased() {
+            return leased != null;
+        }
+
+        /**
+         * @return little endian Y16 sample at pixel index
+         */
+        public int getPixel(int index) {
+            final int offset = index * 2;
+            if (leased != null) {
+                return leased.getShort(offset) & 0xFFFF;
+            }
+            return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+        }
+
+        /**
+         * Copies the frame in one bulk transfer.
+         * @param dst at least {@link #getSize()} bytes
+         */
+        public void copyTo(byte[] dst) {
+            if (leased != null) {
+                leased.position(0);
+                leased.get(dst, 0, size);
+                leased.position(0);
+            } else {
+                System.arraycopy(data, 0, dst, 0, size);
+            }
+        }
+
+        public void writeTo(FileOutputStream out) throws IOException {
+            if (leased != null) {
+                leased.position(0);
+                leased.limit(size);
+                out.getChannel().write(leased);
+                leased.clear();
+            } else {
+                out.write(data, 0, size);
+            }
+        }
+
+        private void releaseLease() {
+            if (leased != null) {
+                final LeaseReleaser r = releaser;
+                final long handle = leaseHandle;
+                leased = null;
+                releaser = null;
+                r.releaseFrame(handle);
+            }
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public long getTimestampNanos() {
+            return timestampNanos;
+        }
+    }
+
+    private final Frame[] slots = {new Frame(), new Frame(), new Frame()};
+    private final AtomicInteger ready = new AtomicInteger(1);
+    private int back = 0;           // writer only
+    private int front = 2;          // readers only, guarded by this
+    private boolean frontValid = false;
+    private volatile boolean empty = true;
+
+    // Statistics
+    private volatile long framesPublished = 0;
+    private volatile long framesDropped = 0;
+    private volatile long framesTaken = 0;
+
+    /**
+     * Returns the writer's slot sized for the next frame. The buffer is reallocated only when
+     * the frame size grows. Fill {@link Frame#getData()} and call {@link #publish(long)}.
+     */
+    public Frame beginWrite(int width, int height, int size) {
+        final Frame frame = slots[back];
+        frame.releaseLease();
+        if (frame.data.length < size) {
+            frame.data = new byte[size];
+        }
+        frame.size = size;
+        frame.width = width;
+        frame.height = height;
+        return frame;
+    }
+
+    /**
+     * Publishes a leased native frame without copying it. The buffer is released through
+     * releaser once no reader can see it anymore.
+     */
+    public void publishLeased(ByteBuffer buffer, long handle, LeaseReleaser releaser,
+            int width, int height, long timestampNanos) {
+        final Frame frame = slots[back];
+        frame.releaseLease();
+        frame.leased = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        frame.leaseHandle = handle;
+        frame.releaser = releaser;
+        frame.size = buffer.capacity();
+        frame.width = width;
+        frame.height = height;
+        publish(timestampNanos);
+    }
+
+    /**
+     * Hands the slot returned by {@link #beginWrite(int, int, int)} to the readers.
+     */
+    public void publish(long timestampNanos) {
+        slots[back].timestampNanos = timestampNanos;
+        final int previous = ready.getAndSet(back | FRESH);
+        back = previous & INDEX_MASK;
+        // nobody can see this slot anymore, return its native buffer right away
+        slots[back].releaseLease();
+        if ((previous & FRESH) != 0) {
+            // the renderer did not get to it, latest wins
+            framesDropped++;
+        }
+        framesPublished++;
+        empty = false;
+    }
+
+    /**
+     * Call with this mailbox's monitor held, and keep holding it while using the frame.
+     * @return the newest frame, null if none was published since {@link #clear()}
+     */
+    public synchronized Frame latest() {
+        if ((ready.get() & FRESH) != 0) {
+            front = ready.getAndSet(front) & INDEX_MASK;
+            frontValid = true;
+            framesTaken++;
+        }
+        return frontValid && !empty ? slots[front] : null;
+    }
+
+    /**
+     * @return true if no frame was published since {@link #clear()}
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Forgets the current frames, e.g. when the camera goes away. Buffers are kept, leases in
+     * every slot are released and dropped. The writer must be stopped first, e.g. its frame
+     * callback removed, and the lease owner still alive.
+     */
+    public synchronized void clear() {
+        empty = true;
+        frontValid = false;
+        int current;
+        do {
+            current = ready.get();
+        } while (!ready.compareAndSet(current, current & INDEX_MASK));
+        for (final Frame frame : slots) {
+            frame.releaseLease();
+        }
+    }
+
+    public long getFramesPublished() {
+        return framesPublished;
+    }
+
+    /**
+     * @return frames overwritten at ingest before any reader took them
+     */
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    public long getFramesTaken() {
+        return framesTaken;
+    }
+}
@@ -0,0 +1,196 @@
+package com.serenegiant.usbcameratest3;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the thermal overlay render on its own thread, collapsing render requests.
+ *
+ * At most one render is in flight and at most one more is pending: requests made while a render
+ * is queued join it, requests made while it runs mark a single follow-up pass, which then sees
+ * every change made meanwhile. Renders start no closer together than one display refresh or one
+ * frame at the target rate, whichever is longer, since anything faster is never shown.
+ */
+public class ThermalRenderScheduler {
+    private static final String TAG = "ThermalRenderScheduler";
+
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_POSTED = 1;              // queued, new requests join it
+    private static final int STATE_RUNNING = 2;
+    private static final int STATE_RUNNING_PENDING = 3;     // one more pass after this one
+
+    private static final float DEFAULT_REFRESH_RATE = 60.0f;
+
+    private final Runnable renderer;
+    private final ScheduledExecutorService executor;
+    private final AtomicInteger state = new AtomicInteger(STATE_IDLE);
+
+    private volatile long vsyncIntervalNanos = (long) (1e9 / DEFAULT_REFRESH_RATE);
+    private volatile long frameIntervalNanos = 0;
+    private volatile long lastRenderStartNanos = 0;
+
+    // Statistics
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private volatile long renderCount = 0;
+    private volatile long lastRenderNanos = 0;
+    private volatile long maxRenderNanos = 0;
+    private volatile long totalRenderNanos = 0;
+
+    private final Runnable renderTask = new Runnable() {
+        @Override
+        public void run() {
+            runRender();
+        }
+    };
+
+    public ThermalRenderScheduler(Runnable renderer) {
+        this.renderer = renderer;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, TAG);
+            }
+        });
+    }
+
+    /**
+     * @param refreshRate display refresh rate in Hz, e.g. Display#getRefreshRate()
+     */
+    public void setDisplayRefreshRate(float refreshRate) {
+        vsyncIntervalNanos = (long) (1e9 / (refreshRate > 0 ? refreshRate : DEFAULT_REFRESH_RATE));
+    }
+
+    /**
+     * @param fps render rate limit below the refresh rate, 0 for refresh rate only
+     */
+    public void setTargetFps(int fps) {
+        frameIntervalNanos = fps > 0 ? 1000000000L / fps : 0;
+    }
+
+    /**
+     * Asks for a render of the current state. Any thread, never blocks.
+     */
+    public void requestRender() {
+        requestCount.incrementAndGet();
+        for (;;) {
+            final int current = state.get();
+            switch (current) {
+            case STATE_IDLE:
+                if (state.compareAndSet(STATE_IDLE, STATE_POSTED)) {
+                    post();
+                    return;
+                }
+                break;
+            case STATE_RUNNING:
+                if (state.compareAndSet(STATE_RUNNING, STATE_RUNNING_PENDING)) {
+                    return;
+                }
+                break;
+            default:
+                // already covered by a queued or pending pass
+                coalescedCount.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void post() {
+        final long interval = Math.max(vsyncIntervalNanos, frameIntervalNanos);
+        final long delay = lastRenderStartNanos + interval - SystemClock.elapsedRealtimeNanos();
+        try {
+            executor.schedule(renderTask, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // shut down
+            state.set(STATE_IDLE);
+        }
+    }
+
+    private void runRender() {
+        state.set(STATE_RUNNING);
+        final long start = SystemClock.elapsedRealtimeNanos();
+        lastRenderStartNanos = start;
+        try {
+            renderer.run();
+        } catch (Exception e) {
+            Log.e(TAG, "Render failed", e);
+        }
+        final long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        lastRenderNanos = elapsed;
+        totalRenderNanos += elapsed;
+        if (elapsed > maxRenderNanos) maxRenderNanos = elapsed;
+        renderCount++;
+
+        if (!state.compareAndSet(STATE_RUNNING, STATE_IDLE)) {
+            // requested while rendering
+            state.set(STATE_POSTED);
+            post();
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        Log.d(TAG, toString());
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    /**
+     * @return renders queued or running, 0 to 2
+     */
+    public int getQueueDepth() {
+        switch (state.get()) {
+        case STATE_IDLE:
+            return 0;
+        case STATE_RUNNING_PENDING:
+            return 2;
+        default:
+            return 1;
+        }
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return requests folded into an already queued or pending render
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getRenderCount() {
+        return renderCount;
+    }
+
+    public long getLastRenderNanos() {
+        return lastRenderNanos;
+    }
+
+    public long getMaxRenderNanos() {
+        return maxRenderNanos;
+    }
+
+    public long getAverageRenderNanos() {
+        final long n = renderCount;
+        return n > 0 ? totalRenderNanos / n : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d, renders=%d, coalesced=%d, depth=%d, avg=%.1fms, max=%.1fms",
+            getRequestCount(), renderCount, getCoalescedCount(), getQueueDepth(),
+            getAverageRenderNanos() / 1e6, maxRenderNanos / 1e6);
+    }
+}